@@ -6,8 +6,10 @@ import java.util.Objects;
 import org.slf4j.Logger;
 import dev.przxmus.nickhider.config.ConfigRepository;
 import dev.przxmus.nickhider.core.IdentityMaskingService;
+import dev.przxmus.nickhider.core.KnownPlayerDirectory;
 import dev.przxmus.nickhider.core.PlayerAliasService;
 import dev.przxmus.nickhider.core.PrivacyRuntimeState;
+import dev.przxmus.nickhider.core.RosterTracker;
 import dev.przxmus.nickhider.core.SkinResolutionService;
 import dev.przxmus.nickhider.core.TextSanitizer;
 
@@ -25,13 +27,18 @@ public final class NickHider {
         }
 
         ConfigRepository configRepository = new ConfigRepository(configDir.resolve(MOD_ID + ".json"));
-        PlayerAliasService aliasService = new PlayerAliasService(configDir.resolve(MOD_ID + "-ids.json"));
+        PlayerAliasService aliasService = new PlayerAliasService(configDir.resolve(MOD_ID + "-ids.bin"));
         IdentityMaskingService identityMaskingService = new IdentityMaskingService(aliasService);
         SkinResolutionService skinResolutionService = new SkinResolutionService(configDir.resolve(MOD_ID + "-cache").resolve("skins"));
-        TextSanitizer textSanitizer = new TextSanitizer(aliasService, identityMaskingService);
+        KnownPlayerDirectory knownPlayers = new KnownPlayerDirectory(configDir.resolve(MOD_ID + "-names.bin"));
+        TextSanitizer textSanitizer = new TextSanitizer(aliasService, identityMaskingService, knownPlayers);
+        RosterTracker rosterTracker = new RosterTracker();
 
-        runtimeState = new PrivacyRuntimeState(configRepository, identityMaskingService, skinResolutionService, textSanitizer);
+        runtimeState = new PrivacyRuntimeState(configRepository, aliasService, identityMaskingService, skinResolutionService, textSanitizer, rosterTracker);
         runtimeState.reloadConfig();
+
+        PrivacyRuntimeState runtime = runtimeState;
+        Runtime.getRuntime().addShutdownHook(new Thread(runtime::onShutdown, "nickhider-shutdown-flush"));
     }
 
     public static PrivacyRuntimeState runtime() {
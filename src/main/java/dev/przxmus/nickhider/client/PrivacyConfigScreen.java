@@ -28,6 +28,7 @@ public final class PrivacyConfigScreen extends Screen {
     private boolean hideOtherSkins;
     private boolean hideOtherCapes;
     private boolean enableExternalFallbacks;
+    private boolean maskKnownPlayers;
 
     private EditBox localNameInput;
     private EditBox localSkinUserInput;
@@ -60,6 +61,7 @@ public final class PrivacyConfigScreen extends Screen {
         this.hideOtherSkins = config.hideOtherSkins;
         this.hideOtherCapes = config.hideOtherCapes;
         this.enableExternalFallbacks = config.enableExternalFallbacks;
+        this.maskKnownPlayers = config.maskKnownPlayers;
     }
 
     @Override
@@ -147,6 +149,15 @@ public final class PrivacyConfigScreen extends Screen {
                 });
         this.addRenderableWidget(externalFallbacksButton);
         addScrollableWidget(externalFallbacksButton, y);
+        y += 26;
+
+        CycleButton<Boolean> maskKnownPlayersButton = CycleButton.onOffBuilder(this.maskKnownPlayers)
+                .create(this.formLeft, this.contentTop, this.formWidth, 20, Component.translatable("nickhider.config.mask_known_players"), (button, value) -> {
+                    this.maskKnownPlayers = value;
+                    refreshValidation();
+                });
+        this.addRenderableWidget(maskKnownPlayersButton);
+        addScrollableWidget(maskKnownPlayersButton, y);
         y += 40;
 
         this.localNameInput = addField(y, Component.translatable("nickhider.config.local_name"), 16, NickHider.runtime().config().localName);
@@ -222,6 +233,7 @@ public final class PrivacyConfigScreen extends Screen {
         config.hideOtherSkins = this.hideOtherSkins;
         config.hideOtherCapes = this.hideOtherCapes;
         config.enableExternalFallbacks = this.enableExternalFallbacks;
+        config.maskKnownPlayers = this.maskKnownPlayers;
         config.localName = this.localNameInput.getValue().trim();
         config.localSkinUser = this.localSkinUserInput.getValue().trim();
         config.localCapeUser = this.localCapeUserInput.getValue().trim();
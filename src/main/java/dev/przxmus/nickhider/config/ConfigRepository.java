@@ -19,14 +19,18 @@ public final class ConfigRepository {
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
 
     private final Path configPath;
-    private PrivacyConfig current = new PrivacyConfig();
+    private volatile ConfigSnapshot current = new ConfigSnapshot(0L, new PrivacyConfig());
 
     public ConfigRepository(Path configPath) {
         this.configPath = configPath;
     }
 
-    public synchronized PrivacyConfig get() {
-        return current.copy();
+    public PrivacyConfig get() {
+        return current.config();
+    }
+
+    public ConfigSnapshot snapshot() {
+        return current;
     }
 
     public synchronized void reload() {
@@ -38,7 +42,7 @@ public final class ConfigRepository {
             writeFile(loaded);
         }
 
-        current = loaded;
+        publish(loaded);
     }
 
     public synchronized void save(PrivacyConfig next) {
@@ -48,7 +52,11 @@ public final class ConfigRepository {
         }
 
         writeFile(next);
-        current = next.copy();
+        publish(next);
+    }
+
+    private void publish(PrivacyConfig config) {
+        current = new ConfigSnapshot(current.version() + 1L, config);
     }
 
     private PrivacyConfig readFile() {
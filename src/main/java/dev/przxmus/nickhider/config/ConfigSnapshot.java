@@ -0,0 +1,19 @@
+package dev.przxmus.nickhider.config;
+
+/**
+ * Published, immutable view of the active config. The snapshot keeps a private copy of the {@link PrivacyConfig} it
+ * was created from, and {@link #config()} hands out copies, so no reader can change what other readers see.
+ */
+public record ConfigSnapshot(long version, PrivacyConfig config) {
+    public ConfigSnapshot {
+        config = config.copy();
+    }
+
+    /**
+     * Returns an editable copy of the snapshot's config.
+     */
+    @Override
+    public PrivacyConfig config() {
+        return config.copy();
+    }
+}
@@ -9,6 +9,7 @@ public final class PrivacyConfig {
     public boolean hideOtherSkins;
     public boolean hideOtherCapes;
     public boolean enableExternalFallbacks;
+    public boolean maskKnownPlayers;
     public String localName;
     public String localSkinUser;
     public String localCapeUser;
@@ -25,6 +26,7 @@ public final class PrivacyConfig {
         this.hideOtherSkins = false;
         this.hideOtherCapes = false;
         this.enableExternalFallbacks = false;
+        this.maskKnownPlayers = false;
         this.localName = "Player";
         this.localSkinUser = "";
         this.localCapeUser = "";
@@ -43,6 +45,7 @@ public final class PrivacyConfig {
         copy.hideOtherSkins = this.hideOtherSkins;
         copy.hideOtherCapes = this.hideOtherCapes;
         copy.enableExternalFallbacks = this.enableExternalFallbacks;
+        copy.maskKnownPlayers = this.maskKnownPlayers;
         copy.localName = this.localName;
         copy.localSkinUser = this.localSkinUser;
         copy.localCapeUser = this.localCapeUser;
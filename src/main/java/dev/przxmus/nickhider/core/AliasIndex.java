@@ -0,0 +1,218 @@
+package dev.przxmus.nickhider.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Open-addressing UUID to short ID index keyed on the two UUID longs.
+ *
+ * <p>Reads are lock-free: a slot's key longs are written before its ID is published through an
+ * {@link AtomicReferenceArray}, and a resized table is published through a volatile field. Writers serialize on the
+ * index monitor; the reverse ID to slot table is only consulted on that slow path.
+ */
+final class AliasIndex {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+    private int size;
+
+    String get(UUID uuid) {
+        return get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    String get(long msb, long lsb) {
+        Table current = table;
+        int mask = current.ids.length() - 1;
+        for (int slot = mix(msb, lsb) & mask; ; slot = (slot + 1) & mask) {
+            String id = current.ids.get(slot);
+            if (id == null) {
+                return null;
+            }
+            if (current.msb[slot] == msb && current.lsb[slot] == lsb) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * UUID that owns {@code shortId}, or {@code null}.
+     */
+    synchronized UUID ownerOf(String shortId) {
+        Table current = table;
+        int slot = current.reverseSlot(shortId);
+        return slot < 0 ? null : new UUID(current.msb[slot], current.lsb[slot]);
+    }
+
+    synchronized void put(UUID uuid, String shortId) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        Table current = table;
+        int mask = current.ids.length() - 1;
+        for (int slot = mix(msb, lsb) & mask; ; slot = (slot + 1) & mask) {
+            String id = current.ids.get(slot);
+            if (id == null) {
+                break;
+            }
+            if (current.msb[slot] == msb && current.lsb[slot] == lsb) {
+                current.removeReverse(id);
+                current.insertReverse(shortId, slot);
+                current.ids.set(slot, shortId);
+                return;
+            }
+        }
+
+        if ((size + 1) * 2 > current.ids.length()) {
+            current = current.resized(current.ids.length() * 2);
+        }
+        current.insert(msb, lsb, shortId);
+        size++;
+        table = current;
+    }
+
+    /**
+     * Inserts a batch with at most one resize. When the batch needs a larger table it is filled privately and
+     * published with a single volatile write; otherwise each alias becomes visible as its slot is published.
+     */
+    synchronized void putAll(Map<UUID, String> aliases) {
+        Table current = table;
+        int capacity = current.ids.length();
+        while ((size + aliases.size()) * 2 > capacity) {
+            capacity *= 2;
+        }
+
+        Table next = capacity == current.ids.length() ? current : current.resized(capacity);
+        for (Map.Entry<UUID, String> entry : aliases.entrySet()) {
+            UUID uuid = entry.getKey();
+            if (next.indexOf(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()) >= 0) {
+                continue;
+            }
+            next.insert(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), entry.getValue());
+            size++;
+        }
+        table = next;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized Map<UUID, String> snapshot() {
+        Table current = table;
+        Map<UUID, String> copy = new HashMap<>(size * 2);
+        for (int slot = 0; slot < current.ids.length(); slot++) {
+            String id = current.ids.get(slot);
+            if (id != null) {
+                copy.put(new UUID(current.msb[slot], current.lsb[slot]), id);
+            }
+        }
+        return copy;
+    }
+
+    private static int mix(long msb, long lsb) {
+        long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private static int mix(String shortId) {
+        int h = shortId.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Table {
+        private final long[] msb;
+        private final long[] lsb;
+        private final AtomicReferenceArray<String> ids;
+        // Reverse table: short ID to forward slot, only touched under the index monitor.
+        private final String[] reverseIds;
+        private final int[] reverseSlots;
+
+        private Table(int capacity) {
+            this.msb = new long[capacity];
+            this.lsb = new long[capacity];
+            this.ids = new AtomicReferenceArray<>(capacity);
+            this.reverseIds = new String[capacity];
+            this.reverseSlots = new int[capacity];
+        }
+
+        private Table resized(int capacity) {
+            Table resized = new Table(capacity);
+            for (int slot = 0; slot < ids.length(); slot++) {
+                String id = ids.get(slot);
+                if (id != null) {
+                    resized.insert(msb[slot], lsb[slot], id);
+                }
+            }
+            return resized;
+        }
+
+        private int indexOf(long keyMsb, long keyLsb) {
+            int mask = ids.length() - 1;
+            for (int slot = mix(keyMsb, keyLsb) & mask; ids.get(slot) != null; slot = (slot + 1) & mask) {
+                if (msb[slot] == keyMsb && lsb[slot] == keyLsb) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        private void insert(long keyMsb, long keyLsb, String shortId) {
+            int mask = ids.length() - 1;
+            int slot = mix(keyMsb, keyLsb) & mask;
+            while (ids.get(slot) != null) {
+                slot = (slot + 1) & mask;
+            }
+            msb[slot] = keyMsb;
+            lsb[slot] = keyLsb;
+            insertReverse(shortId, slot);
+            ids.set(slot, shortId);
+        }
+
+        private int reverseSlot(String shortId) {
+            int mask = reverseIds.length - 1;
+            for (int slot = mix(shortId) & mask; reverseIds[slot] != null; slot = (slot + 1) & mask) {
+                if (reverseIds[slot].equals(shortId)) {
+                    return reverseSlots[slot];
+                }
+            }
+            return -1;
+        }
+
+        private void insertReverse(String shortId, int forwardSlot) {
+            int mask = reverseIds.length - 1;
+            int slot = mix(shortId) & mask;
+            while (reverseIds[slot] != null && !reverseIds[slot].equals(shortId)) {
+                slot = (slot + 1) & mask;
+            }
+            reverseIds[slot] = shortId;
+            reverseSlots[slot] = forwardSlot;
+        }
+
+        private void removeReverse(String shortId) {
+            int mask = reverseIds.length - 1;
+            int slot = mix(shortId) & mask;
+            while (reverseIds[slot] != null && !reverseIds[slot].equals(shortId)) {
+                slot = (slot + 1) & mask;
+            }
+            if (reverseIds[slot] == null) {
+                return;
+            }
+
+            // Backward-shift deletion keeps linear probe chains intact without tombstones.
+            int hole = slot;
+            for (int next = (hole + 1) & mask; reverseIds[next] != null; next = (next + 1) & mask) {
+                int home = mix(reverseIds[next]) & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    reverseIds[hole] = reverseIds[next];
+                    reverseSlots[hole] = reverseSlots[next];
+                    hole = next;
+                }
+            }
+            reverseIds[hole] = null;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package dev.przxmus.nickhider.core;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import dev.przxmus.nickhider.NickHider;
+
+/**
+ * One alias namespace: its lock-free index, its binary store and the aliases created since the last flush.
+ * Mutations synchronize on the shard; writers use a separate lock so disk I/O never blocks alias creation.
+ */
+final class AliasShard {
+    private static final Gson GSON = new Gson();
+    private static final long SLOW_FLUSH_WARN_MS = 50L;
+
+    private final String namespace;
+    private final AliasStore store;
+    private final Path legacyJsonPath;
+    private final AliasIndex index = new AliasIndex();
+
+    private final Object flushLock = new Object();
+    private final Map<UUID, String> pendingAppends = new LinkedHashMap<>();
+    private boolean compactionRequired;
+    private boolean retired;
+
+    AliasShard(String namespace, Path storePath, Path legacyJsonPath) {
+        this.namespace = namespace;
+        this.store = new AliasStore(storePath);
+        this.legacyJsonPath = legacyJsonPath;
+    }
+
+    /**
+     * Namespace key, or {@code null} for the global shard.
+     */
+    String namespace() {
+        return namespace;
+    }
+
+    AliasIndex index() {
+        return index;
+    }
+
+    /**
+     * Records aliases already inserted into the index so the next flush appends them. Callers hold the shard lock.
+     */
+    void markCreated(Map<UUID, String> created) {
+        pendingAppends.putAll(created);
+    }
+
+    void markCreated(UUID uuid, String shortId) {
+        pendingAppends.put(uuid, shortId);
+    }
+
+    /**
+     * Whether the shard was evicted; a retired shard has written its last batch and must not take new aliases, since
+     * a later load of the same namespace would not see them. Callers hold the shard lock.
+     */
+    boolean isRetired() {
+        return retired;
+    }
+
+    /**
+     * Stops the shard from taking new aliases and writes what is pending.
+     */
+    void retire() {
+        synchronized (this) {
+            retired = true;
+        }
+        flush();
+    }
+
+    void load() {
+        if (!store.exists() && legacyJsonPath != null && Files.exists(legacyJsonPath)) {
+            migrateLegacyJson();
+            return;
+        }
+
+        Map<UUID, String> loaded = new HashMap<>();
+        boolean needsCompaction;
+        try {
+            needsCompaction = store.load(loaded);
+        } catch (IOException ex) {
+            NickHider.LOGGER.warn("Failed to load alias store from {}", store.path(), ex);
+            loaded.clear();
+            needsCompaction = true;
+        }
+
+        index.putAll(loaded);
+        if (needsCompaction) {
+            synchronized (this) {
+                compactionRequired = true;
+            }
+            flush();
+        }
+    }
+
+    void flush() {
+        synchronized (flushLock) {
+            Map<UUID, String> batch;
+            boolean compact;
+            synchronized (this) {
+                compact = compactionRequired;
+                if (!compact && pendingAppends.isEmpty()) {
+                    return;
+                }
+                batch = compact ? AliasStore.encodableOnly(index.snapshot()) : new LinkedHashMap<>(pendingAppends);
+                pendingAppends.clear();
+                compactionRequired = false;
+            }
+
+            long startedAt = System.nanoTime();
+            try {
+                if (compact) {
+                    store.compact(batch);
+                } else {
+                    store.append(batch);
+                }
+            } catch (IOException ex) {
+                NickHider.LOGGER.error("[NH-ALIAS-FLUSH] Failed to persist alias store at {}", store.path(), ex);
+                synchronized (this) {
+                    // A failed append may leave a torn record behind, so the retry rewrites the whole store.
+                    compactionRequired = true;
+                }
+                return;
+            }
+
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            if (elapsedMs >= SLOW_FLUSH_WARN_MS) {
+                NickHider.LOGGER.info("[NH-ALIAS-FLUSH] {} {} aliases to {} in {} ms", compact ? "Compacted" : "Appended", batch.size(), store.path(), elapsedMs);
+            } else {
+                NickHider.LOGGER.debug("[NH-ALIAS-FLUSH] {} {} aliases to {} in {} ms", compact ? "Compacted" : "Appended", batch.size(), store.path(), elapsedMs);
+            }
+        }
+    }
+
+    private void migrateLegacyJson() {
+        Map<UUID, String> legacy = new HashMap<>();
+        try (Reader reader = Files.newBufferedReader(legacyJsonPath, StandardCharsets.UTF_8)) {
+            JsonObject root = GSON.fromJson(reader, JsonObject.class);
+            JsonObject aliases = root == null ? null : root.getAsJsonObject("aliases");
+            if (aliases != null) {
+                for (String key : aliases.keySet()) {
+                    UUID uuid = UUID.fromString(key);
+                    String shortId = aliases.get(key).getAsString();
+                    legacy.put(uuid, shortId);
+                }
+            }
+        } catch (IOException | JsonParseException | IllegalArgumentException ex) {
+            NickHider.LOGGER.warn("Failed to load legacy alias cache from {}", legacyJsonPath, ex);
+            return;
+        }
+
+        index.putAll(legacy);
+        try {
+            store.compact(AliasStore.encodableOnly(legacy));
+            Files.move(legacyJsonPath, legacyJsonPath.resolveSibling(legacyJsonPath.getFileName() + ".migrated"), StandardCopyOption.REPLACE_EXISTING);
+            NickHider.LOGGER.info("Migrated {} aliases from {} to {}", legacy.size(), legacyJsonPath, store.path());
+        } catch (IOException ex) {
+            NickHider.LOGGER.warn("Failed to migrate legacy alias cache {} to {}", legacyJsonPath, store.path(), ex);
+            synchronized (this) {
+                compactionRequired = true;
+            }
+        }
+    }
+}
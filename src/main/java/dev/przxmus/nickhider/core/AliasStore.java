@@ -0,0 +1,153 @@
+package dev.przxmus.nickhider.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Append-only binary alias file: an 8-byte header followed by fixed 24-byte records holding the UUID bits and the
+ * base36 short ID as a long. Later records for the same UUID win; duplicates and torn tails are dropped by
+ * {@link #compact(Map)}.
+ */
+final class AliasStore {
+    private static final int MAGIC = 0x4E484944; // "NHID"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_BYTES = 24;
+    private static final int SHORT_ID_RADIX = 36;
+    private static final int MAX_SHORT_ID_LENGTH = 12;
+
+    private final Path path;
+
+    AliasStore(Path path) {
+        this.path = path;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    boolean exists() {
+        return Files.exists(path);
+    }
+
+    /**
+     * Reads every record into {@code into}. Returns {@code true} when the file holds dead records or a torn tail and
+     * should be compacted.
+     */
+    boolean load(Map<UUID, String> into) throws IOException {
+        if (!Files.exists(path)) {
+            return false;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.remaining() < HEADER_BYTES) {
+            return true;
+        }
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a NickHider alias store: " + path);
+        }
+        int version = buffer.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported alias store version " + version + " in " + path);
+        }
+
+        int records = buffer.remaining() / RECORD_BYTES;
+        boolean needsCompaction = buffer.remaining() % RECORD_BYTES != 0;
+        for (int i = 0; i < records; i++) {
+            UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+            long encoded = buffer.getLong();
+            if (encoded < 0L) {
+                needsCompaction = true;
+                continue;
+            }
+            if (into.put(uuid, Long.toString(encoded, SHORT_ID_RADIX)) != null) {
+                needsCompaction = true;
+            }
+        }
+        return needsCompaction;
+    }
+
+    void append(Map<UUID, String> aliases) throws IOException {
+        if (aliases.isEmpty()) {
+            return;
+        }
+
+        Files.createDirectories(path.getParent());
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            boolean fresh = channel.size() == 0L;
+            ByteBuffer buffer = ByteBuffer.allocate((fresh ? HEADER_BYTES : 0) + aliases.size() * RECORD_BYTES);
+            if (fresh) {
+                putHeader(buffer);
+            }
+            putRecords(buffer, aliases);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Rewrites the file with exactly one record per alias through a temp file and atomic move.
+     */
+    void compact(Map<UUID, String> aliases) throws IOException {
+        Files.createDirectories(path.getParent());
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + aliases.size() * RECORD_BYTES);
+        putHeader(buffer);
+        putRecords(buffer, aliases);
+        buffer.flip();
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static boolean isEncodable(String shortId) {
+        if (shortId == null || shortId.isEmpty() || shortId.length() > MAX_SHORT_ID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < shortId.length(); i++) {
+            char c = shortId.charAt(i);
+            if (!(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'z')) {
+                return false;
+            }
+        }
+        return shortId.length() == 1 || shortId.charAt(0) != '0';
+    }
+
+    static Map<UUID, String> encodableOnly(Map<UUID, String> aliases) {
+        Map<UUID, String> encodable = new HashMap<>(aliases.size() * 2);
+        for (Map.Entry<UUID, String> entry : aliases.entrySet()) {
+            if (isEncodable(entry.getValue())) {
+                encodable.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return encodable;
+    }
+
+    private static void putHeader(ByteBuffer buffer) {
+        buffer.putInt(MAGIC);
+        buffer.putInt(FORMAT_VERSION);
+    }
+
+    private static void putRecords(ByteBuffer buffer, Map<UUID, String> aliases) {
+        for (Map.Entry<UUID, String> entry : aliases.entrySet()) {
+            UUID uuid = entry.getKey();
+            buffer.putLong(uuid.getMostSignificantBits());
+            buffer.putLong(uuid.getLeastSignificantBits());
+            buffer.putLong(Long.parseLong(entry.getValue(), SHORT_ID_RADIX));
+        }
+    }
+}
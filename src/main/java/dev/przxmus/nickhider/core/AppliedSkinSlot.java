@@ -0,0 +1,11 @@
+package dev.przxmus.nickhider.core;
+
+/**
+ * Remembers the {@link PrivacyRuntimeState#skinOverrideVersion} a third-party icon was last masked under, mixed into
+ * icons that hold their own copy of a player's skin texture.
+ */
+public interface AppliedSkinSlot {
+    int nickhider$appliedSkinVersion();
+
+    void nickhider$setAppliedSkinVersion(int version);
+}
@@ -0,0 +1,17 @@
+package dev.przxmus.nickhider.core;
+
+import net.minecraft.network.chat.Component;
+
+/**
+ * Per-instance cache of a sanitized display name, mixed into {@code Player} for nametags and {@code PlayerInfo} for the
+ * tab list. The cached value is only valid for an equal {@code source} component and the {@link TextSanitizer#stamp}
+ * and language generation it was computed under.
+ */
+public interface DisplayNameSlot {
+    Cached nickhider$maskedDisplayName();
+
+    void nickhider$setMaskedDisplayName(Cached cached);
+
+    record Cached(Component source, long stamp, long languageGeneration, Component text) {
+    }
+}
@@ -4,21 +4,37 @@ import dev.przxmus.nickhider.config.PrivacyConfig;
 import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 import java.util.UUID;
-import net.minecraft.util.StringUtil;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class IdentityMaskingService {
+    private static final int MEMO_MAX_ENTRIES = 4096;
+
     private final PlayerAliasService aliasService;
 
+    // Keys carry the policy version and alias namespace generation, so a stale insert racing a change is never
+    // served. Unversioned (ad-hoc compiled) policies bypass the memo.
+    private final ConcurrentHashMap<MaskKey, MaskedProfile> memo = new ConcurrentHashMap<>();
+    private volatile long memoVersion = -1L;
+    private volatile long memoAliasGeneration;
+
     public IdentityMaskingService(PlayerAliasService aliasService) {
         this.aliasService = Objects.requireNonNull(aliasService, "aliasService");
     }
 
     public MaskedProfile maskForName(PrivacyConfig config, boolean localTarget, UUID originalUuid, String originalName) {
-        if (config == null || !config.enabled || originalUuid == null || originalName == null || originalName.isBlank()) {
+        return maskForName(config == null ? null : MaskingPolicy.compile(config), localTarget, originalUuid, originalName);
+    }
+
+    public MaskedProfile maskForName(MaskingPolicy policy, boolean localTarget, UUID originalUuid, String originalName) {
+        if (policy == null || !policy.enabled() || originalUuid == null || originalName == null || originalName.isBlank()) {
             return new MaskedProfile(originalUuid, originalName);
         }
 
-        String maskedName = maskedNameForName(config, localTarget, originalUuid, originalName);
+        return memoized(policy, new MaskKey(policy.version(), aliasService.namespaceGeneration(), originalUuid, originalName, localTarget, false));
+    }
+
+    private MaskedProfile computeNameMask(MaskingPolicy policy, boolean localTarget, UUID originalUuid, String originalName) {
+        String maskedName = maskedNameForName(policy.target(localTarget), originalUuid, originalName);
         if (Objects.equals(maskedName, originalName)) {
             return new MaskedProfile(originalUuid, originalName);
         }
@@ -27,16 +43,24 @@ public final class IdentityMaskingService {
     }
 
     public MaskedProfile maskForHead(PrivacyConfig config, boolean localTarget, UUID originalUuid, String originalName) {
-        if (config == null || !config.enabled || originalUuid == null || originalName == null || originalName.isBlank()) {
+        return maskForHead(config == null ? null : MaskingPolicy.compile(config), localTarget, originalUuid, originalName);
+    }
+
+    public MaskedProfile maskForHead(MaskingPolicy policy, boolean localTarget, UUID originalUuid, String originalName) {
+        if (policy == null || !policy.enabled() || originalUuid == null || originalName == null || originalName.isBlank()) {
             return new MaskedProfile(originalUuid, originalName);
         }
 
-        boolean hideSkin = localTarget ? config.hideLocalSkin : config.hideOtherSkins;
-        if (!hideSkin) {
+        return memoized(policy, new MaskKey(policy.version(), aliasService.namespaceGeneration(), originalUuid, originalName, localTarget, true));
+    }
+
+    private MaskedProfile computeHeadMask(MaskingPolicy policy, boolean localTarget, UUID originalUuid, String originalName) {
+        MaskingPolicy.Target target = policy.target(localTarget);
+        if (!target.hideSkin()) {
             return new MaskedProfile(originalUuid, originalName);
         }
 
-        String headName = headMaskName(config, localTarget, originalUuid, originalName);
+        String headName = headMaskName(target, originalUuid, originalName);
         UUID headUuid = syntheticUuid(headName);
         if (headUuid.equals(originalUuid)) {
             headUuid = UUID.nameUUIDFromBytes(("NickHiderSkin:" + originalUuid).getBytes(StandardCharsets.UTF_8));
@@ -44,17 +68,52 @@ public final class IdentityMaskingService {
         return new MaskedProfile(headUuid, headName);
     }
 
+    private MaskedProfile memoized(MaskingPolicy policy, MaskKey key) {
+        long version = policy.version();
+        if (version < 0L) {
+            return compute(policy, key);
+        }
+
+        long aliasGeneration = key.aliasGeneration();
+        if (memoVersion != version || memoAliasGeneration != aliasGeneration) {
+            synchronized (memo) {
+                if (memoVersion != version || memoAliasGeneration != aliasGeneration) {
+                    memo.clear();
+                    memoVersion = version;
+                    memoAliasGeneration = aliasGeneration;
+                }
+            }
+        }
+
+        MaskedProfile cached = memo.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        if (memo.size() >= MEMO_MAX_ENTRIES) {
+            memo.clear();
+        }
+        MaskedProfile computed = compute(policy, key);
+        MaskedProfile raced = memo.putIfAbsent(key, computed);
+        return raced != null ? raced : computed;
+    }
+
+    private MaskedProfile compute(MaskingPolicy policy, MaskKey key) {
+        return key.head()
+                ? computeHeadMask(policy, key.localTarget(), key.uuid(), key.name())
+                : computeNameMask(policy, key.localTarget(), key.uuid(), key.name());
+    }
+
     UUID syntheticUuid(String name) {
         return UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes(StandardCharsets.UTF_8));
     }
 
-    private String headMaskName(PrivacyConfig config, boolean localTarget, UUID originalUuid, String originalName) {
-        String sourceUser = localTarget ? config.localSkinUser : config.othersSkinUser;
-        if (!StringUtil.isNullOrEmpty(sourceUser)) {
-            return sourceUser.trim();
+    private String headMaskName(MaskingPolicy.Target target, UUID originalUuid, String originalName) {
+        if (target.headSourceName() != null) {
+            return target.headSourceName();
         }
 
-        String maskedFromNameRules = maskedNameForName(config, localTarget, originalUuid, originalName);
+        String maskedFromNameRules = maskedNameForName(target, originalUuid, originalName);
         if (!Objects.equals(maskedFromNameRules, originalName)) {
             return maskedFromNameRules;
         }
@@ -62,15 +121,14 @@ public final class IdentityMaskingService {
         return "nh_" + aliasService.getOrCreateShortId(originalUuid);
     }
 
-    private String maskedNameForName(PrivacyConfig config, boolean localTarget, UUID originalUuid, String originalName) {
-        if (localTarget) {
-            return config.hideLocalName ? config.localName : originalName;
-        }
-
-        if (!config.hideOtherNames) {
+    private String maskedNameForName(MaskingPolicy.Target target, UUID originalUuid, String originalName) {
+        if (!target.hideName()) {
             return originalName;
         }
 
-        return config.othersNameTemplate.replace("[ID]", aliasService.getOrCreateShortId(originalUuid));
+        return target.maskedName(target.nameUsesShortId() ? aliasService.getOrCreateShortId(originalUuid) : null);
+    }
+
+    private record MaskKey(long version, long aliasGeneration, UUID uuid, String name, boolean localTarget, boolean head) {
     }
 }
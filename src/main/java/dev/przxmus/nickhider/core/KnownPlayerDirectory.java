@@ -0,0 +1,362 @@
+package dev.przxmus.nickhider.core;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import dev.przxmus.nickhider.NickHider;
+
+/**
+ * Every player name seen on any roster, persisted across sessions, with a whole-word dictionary automaton over all
+ * of them so mentions of offline players can be masked too.
+ *
+ * <p>Like {@link RosterPatternIndex}, the published {@link NameDictionary} is a compiled base plus a small overlay:
+ * recording only recompiles the names changed since the base was built, so its cost follows the new names rather
+ * than the directory size. Once the overlay grows past {@link #OVERLAY_REBUILD_THRESHOLD} names a fresh base is
+ * compiled on a background worker, coalescing bursts of new names, and swapped in through a volatile field. Matching
+ * cost depends on the text length, not the dictionary size.
+ *
+ * <p>The directory keeps at most {@link #MAX_KNOWN_PLAYERS} players; recording past that forgets the players whose
+ * names were recorded longest ago and compacts the file, so it never grows into an unbounded identity history.
+ */
+public final class KnownPlayerDirectory {
+    private static final long REBUILD_DELAY_MS = 1_000L;
+    private static final long FLUSH_DELAY_MS = 5_000L;
+    private static final int MIN_NAME_LENGTH = 3;
+    static final int OVERLAY_REBUILD_THRESHOLD = 64;
+    static final int MAX_KNOWN_PLAYERS = 4_096;
+
+    private final KnownPlayerStore store;
+    private final ScheduledExecutorService worker;
+    private final long rebuildDelayMs;
+    private final long flushDelayMs;
+    private final int capacity;
+
+    // Insertion order doubles as recency: a renamed player moves to the end, so the newest owner of a name wins.
+    private final LinkedHashMap<UUID, String> namesByUuid = new LinkedHashMap<>();
+    private final Map<UUID, String> pendingAppends = new LinkedHashMap<>();
+    private boolean compactionRequired;
+
+    // Dictionary names (at least MIN_NAME_LENGTH long) with their newest owner and how many players carry them.
+    private final Map<String, UUID> ownersByName = new HashMap<>();
+    private final Map<String, Integer> holdersByName = new HashMap<>();
+
+    private NameDictionary.Segment base = NameDictionary.Segment.EMPTY;
+    private TextPrefilter baseFilter = TextPrefilter.NONE;
+    private boolean baseCoversLoadedNames;
+    // Names whose owner may differ from the base; a null value means the name is no longer in the dictionary.
+    private final Map<String, UUID> nameChanges = new HashMap<>();
+    // Names changed since the in-flight rebuild took its snapshot, or null when none is running.
+    private Set<String> namesChangedDuringRebuild;
+
+    private final Object flushLock = new Object();
+    private final Object rebuildLock = new Object();
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean(false);
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private volatile NameDictionary dictionary = NameDictionary.EMPTY;
+    private long generation;
+
+    public KnownPlayerDirectory(Path storePath) {
+        this(storePath, createDefaultWorker(), REBUILD_DELAY_MS, FLUSH_DELAY_MS, MAX_KNOWN_PLAYERS);
+    }
+
+    KnownPlayerDirectory(Path storePath, ScheduledExecutorService worker, long rebuildDelayMs, long flushDelayMs, int capacity) {
+        this.store = new KnownPlayerStore(storePath);
+        this.worker = worker;
+        this.rebuildDelayMs = rebuildDelayMs;
+        this.flushDelayMs = flushDelayMs;
+        this.capacity = capacity;
+        load();
+        scheduleRebuild(0L);
+    }
+
+    /**
+     * Records roster names, publishing them through the dictionary overlay and scheduling a write-behind flush when
+     * anything changed.
+     */
+    public void record(Map<UUID, String> players) {
+        boolean changed = false;
+        boolean rebuild;
+        synchronized (this) {
+            for (Map.Entry<UUID, String> entry : players.entrySet()) {
+                UUID uuid = entry.getKey();
+                String name = entry.getValue();
+                if (uuid == null || name == null || name.isBlank() || name.equals(namesByUuid.get(uuid))) {
+                    continue;
+                }
+                String previous = namesByUuid.remove(uuid);
+                if (previous != null) {
+                    retract(uuid, previous);
+                }
+                namesByUuid.put(uuid, name);
+                admit(uuid, name);
+                // Re-inserted so appends keep recency order and the file replays to the same newest owners.
+                pendingAppends.remove(uuid);
+                pendingAppends.put(uuid, name);
+                changed = true;
+            }
+            if (changed) {
+                evictOverCapacity();
+                generation++;
+                publish();
+            }
+            rebuild = nameChanges.size() > OVERLAY_REBUILD_THRESHOLD && namesChangedDuringRebuild == null;
+        }
+
+        if (rebuild) {
+            scheduleRebuild(rebuildDelayMs);
+        }
+        if (changed) {
+            scheduleFlush();
+        }
+    }
+
+    NameDictionary dictionary() {
+        return dictionary;
+    }
+
+    public synchronized int size() {
+        return namesByUuid.size();
+    }
+
+    synchronized int overlaySize() {
+        return nameChanges.size();
+    }
+
+    /**
+     * Folds the overlay into a freshly compiled base. Names recorded while it compiles stay in the overlay.
+     */
+    void rebuildNow() {
+        synchronized (rebuildLock) {
+            List<UUID> uuids;
+            List<String> names;
+            synchronized (this) {
+                uuids = new ArrayList<>(ownersByName.size());
+                names = new ArrayList<>(ownersByName.size());
+                for (Map.Entry<String, UUID> owner : ownersByName.entrySet()) {
+                    names.add(owner.getKey());
+                    uuids.add(owner.getValue());
+                }
+                namesChangedDuringRebuild = new HashSet<>();
+            }
+
+            long startedAt = System.nanoTime();
+            NameDictionary.Segment rebuilt = NameDictionary.Segment.of(uuids, names);
+            TextPrefilter rebuiltFilter = TextPrefilter.ofNames(names);
+            synchronized (this) {
+                base = rebuilt;
+                baseFilter = rebuiltFilter;
+                nameChanges.keySet().retainAll(namesChangedDuringRebuild);
+                namesChangedDuringRebuild = null;
+                if (!baseCoversLoadedNames) {
+                    // Names loaded from disk reach the dictionary with the first base, so only that fold adds any.
+                    baseCoversLoadedNames = true;
+                    generation++;
+                }
+                publish();
+            }
+            NickHider.LOGGER.debug(
+                    "[NH-NAME-DICT] Rebuilt known player dictionary with {} names in {} ms",
+                    names.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)
+            );
+        }
+    }
+
+    private void evictOverCapacity() {
+        Iterator<Map.Entry<UUID, String>> eldest = namesByUuid.entrySet().iterator();
+        while (namesByUuid.size() > capacity) {
+            Map.Entry<UUID, String> entry = eldest.next();
+            UUID uuid = entry.getKey();
+            String name = entry.getValue();
+            eldest.remove();
+            retract(uuid, name);
+            pendingAppends.remove(uuid);
+            compactionRequired = true;
+        }
+    }
+
+    private void retract(UUID uuid, String name) {
+        if (name.length() < MIN_NAME_LENGTH) {
+            return;
+        }
+        if (holdersByName.merge(name, -1, Integer::sum) <= 0) {
+            holdersByName.remove(name);
+            ownersByName.remove(name);
+            recordNameChange(name, null);
+        } else if (uuid.equals(ownersByName.get(name))) {
+            // Another player still carries this name, so the newest of them takes it over.
+            UUID heir = newestHolder(name);
+            ownersByName.put(name, heir);
+            recordNameChange(name, heir);
+        }
+    }
+
+    private void admit(UUID uuid, String name) {
+        if (name.length() < MIN_NAME_LENGTH) {
+            return;
+        }
+        holdersByName.merge(name, 1, Integer::sum);
+        ownersByName.put(name, uuid);
+        recordNameChange(name, uuid);
+    }
+
+    private UUID newestHolder(String name) {
+        UUID holder = null;
+        for (Map.Entry<UUID, String> entry : namesByUuid.entrySet()) {
+            if (name.equals(entry.getValue())) {
+                holder = entry.getKey();
+            }
+        }
+        if (holder == null) {
+            throw new IllegalStateException("No remaining holder for " + name);
+        }
+        return holder;
+    }
+
+    private void recordNameChange(String name, UUID owner) {
+        nameChanges.put(name, owner);
+        if (namesChangedDuringRebuild != null) {
+            namesChangedDuringRebuild.add(name);
+        }
+    }
+
+    private void publish() {
+        List<UUID> uuids = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int[] tombstones = new int[nameChanges.size()];
+        int tombstoneCount = 0;
+        for (Map.Entry<String, UUID> change : nameChanges.entrySet()) {
+            if (change.getValue() != null) {
+                names.add(change.getKey());
+                uuids.add(change.getValue());
+            }
+            int baseId = base.matcher().idOf(change.getKey());
+            if (baseId >= 0) {
+                tombstones[tombstoneCount++] = baseId;
+            }
+        }
+
+        int[] suppressed = Arrays.copyOf(tombstones, tombstoneCount);
+        Arrays.sort(suppressed);
+        NameDictionary.Segment overlay = names.isEmpty() ? NameDictionary.Segment.EMPTY : NameDictionary.Segment.of(uuids, names);
+        dictionary = new NameDictionary(generation, base, overlay, suppressed, baseFilter.withNames(names));
+    }
+
+    public void flush() {
+        synchronized (flushLock) {
+            Map<UUID, String> batch;
+            boolean compact;
+            synchronized (this) {
+                compact = compactionRequired;
+                if (!compact && pendingAppends.isEmpty()) {
+                    return;
+                }
+                batch = new LinkedHashMap<>(compact ? namesByUuid : pendingAppends);
+                pendingAppends.clear();
+                compactionRequired = false;
+            }
+
+            try {
+                if (compact) {
+                    store.compact(batch);
+                } else {
+                    store.append(batch);
+                }
+            } catch (IOException ex) {
+                NickHider.LOGGER.error("Failed to persist known players at {}", store.path(), ex);
+                synchronized (this) {
+                    compactionRequired = true;
+                }
+            }
+        }
+    }
+
+    private void load() {
+        Map<UUID, String> loaded = new LinkedHashMap<>();
+        boolean needsCompaction;
+        try {
+            needsCompaction = store.load(loaded);
+        } catch (IOException ex) {
+            NickHider.LOGGER.warn("Failed to load known players from {}", store.path(), ex);
+            loaded.clear();
+            needsCompaction = true;
+        }
+
+        synchronized (this) {
+            int skipped = Math.max(0, loaded.size() - capacity);
+            for (Map.Entry<UUID, String> entry : loaded.entrySet()) {
+                if (skipped > 0) {
+                    skipped--;
+                    needsCompaction = true;
+                } else {
+                    namesByUuid.put(entry.getKey(), entry.getValue());
+                }
+            }
+            for (Map.Entry<UUID, String> entry : namesByUuid.entrySet()) {
+                // Recency order, so the newest holder of a shared name ends up owning it.
+                if (entry.getValue().length() >= MIN_NAME_LENGTH) {
+                    holdersByName.merge(entry.getValue(), 1, Integer::sum);
+                    ownersByName.put(entry.getValue(), entry.getKey());
+                }
+            }
+            compactionRequired = needsCompaction;
+        }
+        if (needsCompaction) {
+            flush();
+        }
+    }
+
+    private void scheduleRebuild(long delayMs) {
+        if (!rebuildScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            worker.schedule(() -> {
+                rebuildScheduled.set(false);
+                rebuildNow();
+            }, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException ex) {
+            rebuildScheduled.set(false);
+            NickHider.LOGGER.warn("Failed to schedule known player dictionary rebuild", ex);
+        }
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            worker.schedule(() -> {
+                flushScheduled.set(false);
+                flush();
+            }, flushDelayMs, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException ex) {
+            flushScheduled.set(false);
+            NickHider.LOGGER.warn("Failed to schedule known player flush, writing synchronously", ex);
+            flush();
+        }
+    }
+
+    private static ScheduledExecutorService createDefaultWorker() {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "nickhider-name-dictionary");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,128 @@
+package dev.przxmus.nickhider.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Append-only binary file of known player names: an 8-byte header followed by records of the UUID bits, a one-byte
+ * UTF-8 length and the name bytes. Later records for the same UUID win and move it to the end; duplicates and torn
+ * tails are dropped by {@link #compact(Map)}.
+ */
+final class KnownPlayerStore {
+    private static final int MAGIC = 0x4E484B50; // "NHKP"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_FIXED_BYTES = 17;
+    private static final int MAX_NAME_BYTES = 255;
+
+    private final Path path;
+
+    KnownPlayerStore(Path path) {
+        this.path = path;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    /**
+     * Reads every record into {@code into}. Returns {@code true} when the file holds dead records or a torn tail and
+     * should be compacted.
+     */
+    boolean load(Map<UUID, String> into) throws IOException {
+        if (!Files.exists(path)) {
+            return false;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.remaining() < HEADER_BYTES) {
+            return true;
+        }
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a NickHider known player store: " + path);
+        }
+        int version = buffer.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported known player store version " + version + " in " + path);
+        }
+
+        boolean needsCompaction = false;
+        while (buffer.remaining() >= RECORD_FIXED_BYTES) {
+            long msb = buffer.getLong();
+            long lsb = buffer.getLong();
+            int nameBytes = buffer.get() & 0xFF;
+            if (buffer.remaining() < nameBytes) {
+                return true;
+            }
+            String name = new String(buffer.array(), buffer.position(), nameBytes, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + nameBytes);
+            UUID uuid = new UUID(msb, lsb);
+            if (into.remove(uuid) != null) {
+                needsCompaction = true;
+            }
+            into.put(uuid, name);
+        }
+        return needsCompaction || buffer.hasRemaining();
+    }
+
+    void append(Map<UUID, String> players) throws IOException {
+        if (players.isEmpty()) {
+            return;
+        }
+
+        Files.createDirectories(path.getParent());
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            write(channel, players, channel.size() == 0L);
+        }
+    }
+
+    /**
+     * Rewrites the file with exactly one record per player through a temp file and atomic move.
+     */
+    void compact(Map<UUID, String> players) throws IOException {
+        Files.createDirectories(path.getParent());
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(channel, players, true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void write(FileChannel channel, Map<UUID, String> players, boolean withHeader) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((withHeader ? HEADER_BYTES : 0) + players.size() * (RECORD_FIXED_BYTES + 32));
+        if (withHeader) {
+            buffer.putInt(MAGIC);
+            buffer.putInt(FORMAT_VERSION);
+        }
+
+        for (Map.Entry<UUID, String> entry : players.entrySet()) {
+            byte[] name = entry.getValue().getBytes(StandardCharsets.UTF_8);
+            if (name.length > MAX_NAME_BYTES) {
+                continue;
+            }
+            if (buffer.remaining() < RECORD_FIXED_BYTES + name.length) {
+                ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() * 2 + RECORD_FIXED_BYTES + name.length);
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+            }
+            buffer.putLong(entry.getKey().getMostSignificantBits());
+            buffer.putLong(entry.getKey().getLeastSignificantBits());
+            buffer.put((byte) name.length);
+            buffer.put(name);
+        }
+
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package dev.przxmus.nickhider.core;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Identity set of the loaded language file values, so translated UI text skips sanitization with one lookup.
+ *
+ * <p>Membership is by reference: a chat line that merely equals a translation is a different instance and is still
+ * sanitized. Values with format specifiers are left out because they are only rendered after arguments, which may
+ * be player names, are substituted.
+ */
+final class LanguageTextIndex {
+    private volatile Set<String> values = Set.of();
+
+    void replace(Map<String, String> storage) {
+        Set<String> indexed = Collections.newSetFromMap(new IdentityHashMap<>(storage.size()));
+        for (String value : storage.values()) {
+            if (value != null && !value.isEmpty() && value.indexOf('%') < 0) {
+                indexed.add(value);
+            }
+        }
+        values = indexed;
+    }
+
+    boolean contains(String text) {
+        return values.contains(text);
+    }
+
+    int size() {
+        return values.size();
+    }
+}
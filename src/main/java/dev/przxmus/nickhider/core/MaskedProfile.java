@@ -4,15 +4,20 @@ import com.mojang.authlib.GameProfile;
 import java.util.Objects;
 import java.util.UUID;
 
-public record MaskedProfile(UUID uuid, String name) {
+/**
+ * Masking result. The {@link GameProfile} is built once alongside it, so memoized results hand out a stable
+ * profile instance that identity-keyed caches can hit on.
+ */
+public record MaskedProfile(UUID uuid, String name, GameProfile gameProfile) {
+    public MaskedProfile(UUID uuid, String name) {
+        this(uuid, name, uuid == null || name == null || name.isBlank() ? null : new GameProfile(uuid, name));
+    }
+
     public boolean isSameAs(UUID otherUuid, String otherName) {
         return Objects.equals(uuid, otherUuid) && Objects.equals(name, otherName);
     }
 
     public GameProfile toGameProfile() {
-        if (uuid == null || name == null || name.isBlank()) {
-            return null;
-        }
-        return new GameProfile(uuid, name);
+        return gameProfile;
     }
 }
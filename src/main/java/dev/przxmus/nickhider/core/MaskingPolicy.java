@@ -0,0 +1,163 @@
+package dev.przxmus.nickhider.core;
+
+import java.util.regex.Pattern;
+import net.minecraft.util.StringUtil;
+import dev.przxmus.nickhider.config.ConfigSnapshot;
+import dev.przxmus.nickhider.config.PrivacyConfig;
+
+/**
+ * Masking decisions compiled once per config version, so hooks only read fields instead of re-deriving them from
+ * raw {@link PrivacyConfig} strings and toggles.
+ */
+public final class MaskingPolicy {
+    private static final String ID_TOKEN = "[ID]";
+    private static final Pattern ID_TOKEN_PATTERN = Pattern.compile(Pattern.quote(ID_TOKEN));
+
+    private final long version;
+    private final boolean enabled;
+    private final boolean enableExternalFallbacks;
+    private final boolean maskKnownPlayers;
+    private final Target local;
+    private final Target others;
+
+    private MaskingPolicy(long version, PrivacyConfig config) {
+        this.version = version;
+        this.enabled = config.enabled;
+        this.enableExternalFallbacks = config.enableExternalFallbacks;
+        this.maskKnownPlayers = config.enabled && config.hideOtherNames && config.maskKnownPlayers;
+        this.local = new Target(
+                config.hideLocalName,
+                new String[] {config.localName},
+                config.hideLocalSkin,
+                config.localSkinUser,
+                config.hideLocalCape,
+                preferredCapeSource(config.localCapeUser, config.localSkinUser)
+        );
+        this.others = new Target(
+                config.hideOtherNames,
+                config.othersNameTemplate == null ? new String[] {null} : ID_TOKEN_PATTERN.split(config.othersNameTemplate, -1),
+                config.hideOtherSkins,
+                config.othersSkinUser,
+                config.hideOtherCapes,
+                preferredCapeSource(config.othersCapeUser, config.othersSkinUser)
+        );
+    }
+
+    public static MaskingPolicy compile(ConfigSnapshot snapshot) {
+        return new MaskingPolicy(snapshot.version(), snapshot.config());
+    }
+
+    public static MaskingPolicy compile(PrivacyConfig config) {
+        return new MaskingPolicy(-1L, config);
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    public boolean enableExternalFallbacks() {
+        return enableExternalFallbacks;
+    }
+
+    /**
+     * Whether names of players seen on earlier rosters are remembered and masked in text; requires hiding other names.
+     */
+    public boolean maskKnownPlayers() {
+        return maskKnownPlayers;
+    }
+
+    public Target target(boolean localTarget) {
+        return localTarget ? local : others;
+    }
+
+    private static String preferredCapeSource(String capeSourceUser, String skinSourceUser) {
+        if (!StringUtil.isNullOrEmpty(capeSourceUser)) {
+            return capeSourceUser;
+        }
+        return skinSourceUser;
+    }
+
+    public static final class Target {
+        private final boolean hideName;
+        private final String[] nameParts;
+        private final boolean hideSkin;
+        private final String skinSourceUser;
+        private final String headSourceName;
+        private final boolean hideCape;
+        private final String capeSourceUser;
+
+        private Target(
+                boolean hideName,
+                String[] nameParts,
+                boolean hideSkin,
+                String skinSourceUser,
+                boolean hideCape,
+                String capeSourceUser
+        ) {
+            this.hideName = hideName;
+            this.nameParts = nameParts;
+            this.hideSkin = hideSkin;
+            this.skinSourceUser = skinSourceUser;
+            this.headSourceName = StringUtil.isNullOrEmpty(skinSourceUser) ? null : skinSourceUser.trim();
+            this.hideCape = hideCape;
+            this.capeSourceUser = StringUtil.isNullOrEmpty(capeSourceUser) ? null : capeSourceUser;
+        }
+
+        public boolean hideName() {
+            return hideName;
+        }
+
+        /**
+         * Whether {@link #maskedName(String)} needs the target's short alias ID.
+         */
+        public boolean nameUsesShortId() {
+            return nameParts.length > 1;
+        }
+
+        /**
+         * Renders the replacement name, substituting {@code shortId} for every {@code [ID]} token of the template.
+         */
+        public String maskedName(String shortId) {
+            if (nameParts.length == 1) {
+                return nameParts[0];
+            }
+
+            StringBuilder builder = new StringBuilder(16);
+            builder.append(nameParts[0]);
+            for (int i = 1; i < nameParts.length; i++) {
+                builder.append(shortId).append(nameParts[i]);
+            }
+            return builder.toString();
+        }
+
+        public boolean hideSkin() {
+            return hideSkin;
+        }
+
+        public String skinSourceUser() {
+            return skinSourceUser;
+        }
+
+        /**
+         * Trimmed skin source username used to name masked head profiles, or {@code null} when none is configured.
+         */
+        public String headSourceName() {
+            return headSourceName;
+        }
+
+        public boolean hideCape() {
+            return hideCape;
+        }
+
+        /**
+         * Cape source username, falling back to the skin source, or {@code null} when neither is configured.
+         */
+        public String capeSourceUser() {
+            return capeSourceUser;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package dev.przxmus.nickhider.core;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Immutable view of the known player dictionary: a base segment compiled in the background, an overlay segment with
+ * names recorded since, and tombstones hiding base names whose owner changed. Pattern indexes of each segment line
+ * up with its {@code uuids} and {@code names}.
+ *
+ * <p>{@code generation} changes only when the set of dictionary names does; folding the overlay into a new base
+ * keeps it, since the folded dictionary matches exactly the same names.
+ */
+record NameDictionary(long generation, Segment base, Segment overlay, int[] suppressedBaseIds, TextPrefilter prefilter) {
+    static final NameDictionary EMPTY = new NameDictionary(0L, Segment.EMPTY, Segment.EMPTY, new int[0], TextPrefilter.NONE);
+
+    record Segment(ReplacementMatcher matcher, UUID[] uuids, String[] names) {
+        static final Segment EMPTY = of(List.of(), List.of());
+
+        static Segment of(List<UUID> uuids, List<String> names) {
+            return new Segment(ReplacementMatcher.compileDictionary(names), uuids.toArray(UUID[]::new), names.toArray(String[]::new));
+        }
+    }
+
+    /**
+     * Masks one known player; returns {@code null} to leave the name visible.
+     */
+    @FunctionalInterface
+    interface Masker {
+        String mask(UUID uuid, String name);
+    }
+
+    boolean isEmpty() {
+        return base.matcher().isEmpty() && overlay.matcher().isEmpty();
+    }
+
+    /**
+     * Layers for one matching pass: the overlay first, then the base with tombstoned ids suppressed.
+     */
+    ReplacementMatcher.Layer[] layers(Masker masker) {
+        ReplacementMatcher.Layer baseLayer = new ReplacementMatcher.Layer(
+                base.matcher(),
+                id -> masker.mask(base.uuids()[id], base.names()[id]),
+                suppressedBaseIds.length == 0 ? null : id -> Arrays.binarySearch(suppressedBaseIds, id) >= 0
+        );
+        if (overlay.matcher().isEmpty()) {
+            return new ReplacementMatcher.Layer[] {baseLayer};
+        }
+        ReplacementMatcher.Layer overlayLayer = new ReplacementMatcher.Layer(
+                overlay.matcher(),
+                id -> masker.mask(overlay.uuids()[id], overlay.names()[id]),
+                null
+        );
+        return new ReplacementMatcher.Layer[] {overlayLayer, baseLayer};
+    }
+}
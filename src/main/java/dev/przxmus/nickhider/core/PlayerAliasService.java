@@ -1,42 +1,176 @@
 package dev.przxmus.nickhider.core;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParseException;
-import java.io.IOException;
-import java.io.Reader;
-import java.io.Writer;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import dev.przxmus.nickhider.NickHider;
 import dev.przxmus.nickhider.config.PrivacyConfig;
 
 public final class PlayerAliasService {
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
     private static final long MAX_ID_SPACE = 2_176_782_336L; // 36^6
+    private static final long FLUSH_DELAY_MS = 2_000L;
+    private static final int MAX_RESIDENT_SHARDS = 4;
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(PlayerAliasService::newSha256);
 
-    private final Path cachePath;
-    private final Map<UUID, String> uuidToShortId = new HashMap<>();
-    private final Map<String, UUID> shortIdToUuid = new HashMap<>();
+    private final Path shardDirectory;
+    private final ScheduledExecutorService worker;
+    private final long flushDelayMs;
+    private final AliasShard globalShard;
 
-    public PlayerAliasService(Path cachePath) {
-        this.cachePath = cachePath;
-        loadCache();
+    // Per-server shards in access order; the active shard is never evicted.
+    private final LinkedHashMap<String, AliasShard> residentShards = new LinkedHashMap<>(8, 0.75f, true);
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private volatile AliasShard activeShard;
+    private volatile long namespaceGeneration;
+    // Bumped by every activation, so a shard loaded on the worker is only published if nothing replaced it meanwhile.
+    private long activationSerial;
+
+    /**
+     * @param storePath global binary alias store; a sibling {@code .json} cache from older versions is migrated on
+     *                  first load, and per-server shards live in a sibling directory named after the store
+     */
+    public PlayerAliasService(Path storePath) {
+        this(storePath, createDefaultWorker(), FLUSH_DELAY_MS);
+    }
+
+    PlayerAliasService(Path storePath, ScheduledExecutorService worker, long flushDelayMs) {
+        String baseName = baseName(storePath);
+        Path legacyJsonPath = storePath.resolveSibling(baseName + ".json");
+        this.shardDirectory = storePath.resolveSibling(baseName + "-servers");
+        this.worker = worker;
+        this.flushDelayMs = flushDelayMs;
+        this.globalShard = new AliasShard(null, storePath, legacyJsonPath.equals(storePath) ? null : legacyJsonPath);
+        this.globalShard.load();
+        this.activeShard = globalShard;
+    }
+
+    /**
+     * Switches alias lookups to the shard of {@code serverAddress}. A shard that is not resident is loaded on the
+     * worker, and the global shard keeps serving lookups until it is published, so joining a server never waits on
+     * disk I/O. A {@code null} or blank address selects the global shard used for singleplayer.
+     */
+    public void activateNamespace(String serverAddress) {
+        String key = namespaceKey(serverAddress);
+        long activation;
+        synchronized (this) {
+            activation = ++activationSerial;
+        }
+        if (key == null) {
+            switchTo(globalShard, activation);
+            return;
+        }
+
+        AliasShard resident;
+        synchronized (residentShards) {
+            resident = residentShards.get(key);
+        }
+        if (resident != null) {
+            activate(resident, activation);
+            return;
+        }
+
+        switchTo(globalShard, activation);
+        try {
+            worker.execute(() -> loadAndActivate(key, activation));
+        } catch (RuntimeException ex) {
+            NickHider.LOGGER.warn("[NH-ALIAS-SHARD] Failed to schedule loading alias namespace {}, loading synchronously", key, ex);
+            loadAndActivate(key, activation);
+        }
+    }
+
+    /**
+     * Falls back to the global shard. The released shard stays resident, and keeps its pending writes, until it is
+     * evicted or flushed.
+     */
+    public void releaseNamespace() {
+        activateNamespace(null);
+    }
+
+    /**
+     * Incremented whenever the active namespace changes, so callers memoizing aliases can tell them apart.
+     */
+    public long namespaceGeneration() {
+        return namespaceGeneration;
+    }
+
+    String activeNamespace() {
+        return activeShard.namespace();
+    }
+
+    int residentShardCount() {
+        synchronized (residentShards) {
+            return residentShards.size();
+        }
+    }
+
+    private void loadAndActivate(String key, long activation) {
+        AliasShard shard;
+        synchronized (residentShards) {
+            shard = residentShards.get(key);
+        }
+        if (shard == null) {
+            // Loaded outside the lock so flush() and lookups of other shards are not blocked on disk I/O.
+            AliasShard loaded = new AliasShard(key, shardDirectory.resolve(key + ".bin"), null);
+            loaded.load();
+            synchronized (residentShards) {
+                AliasShard raced = residentShards.putIfAbsent(key, loaded);
+                shard = raced != null ? raced : loaded;
+            }
+        }
+        activate(shard, activation);
+    }
+
+    private void activate(AliasShard shard, long activation) {
+        synchronized (this) {
+            if (activation != activationSerial) {
+                // A later activation superseded this one while the shard was loading; it stays resident for reuse.
+                return;
+            }
+        }
+
+        synchronized (residentShards) {
+            var iterator = residentShards.values().iterator();
+            while (residentShards.size() > MAX_RESIDENT_SHARDS && iterator.hasNext()) {
+                AliasShard eldest = iterator.next();
+                if (eldest != shard) {
+                    iterator.remove();
+                    // Retired under the lock, so a re-activation cannot load the file before the last append lands.
+                    eldest.retire();
+                }
+            }
+        }
+        switchTo(shard, activation);
     }
 
-    public synchronized Map<String, String> buildReplacementMap(UUID localPlayerUuid, Map<UUID, String> namesByUuid, PrivacyConfig config) {
-        if (!config.enabled) {
+    private synchronized void switchTo(AliasShard shard, long activation) {
+        if (activation != activationSerial || activeShard == shard) {
+            return;
+        }
+        activeShard = shard;
+        namespaceGeneration++;
+    }
+
+    public Map<String, String> buildReplacementMap(UUID localPlayerUuid, Map<UUID, String> namesByUuid, PrivacyConfig config) {
+        return buildReplacementMap(localPlayerUuid, namesByUuid, MaskingPolicy.compile(config));
+    }
+
+    public Map<String, String> buildReplacementMap(UUID localPlayerUuid, Map<UUID, String> namesByUuid, MaskingPolicy policy) {
+        if (!policy.enabled()) {
             return Map.of();
         }
 
@@ -50,18 +184,12 @@ public final class PlayerAliasService {
                 continue;
             }
 
-            if (uuid.equals(localPlayerUuid)) {
-                if (config.hideLocalName && !config.localName.equals(original)) {
-                    replacements.put(original, config.localName);
-                }
-                continue;
-            }
-
-            if (!config.hideOtherNames) {
+            MaskingPolicy.Target target = policy.target(uuid.equals(localPlayerUuid));
+            if (!target.hideName()) {
                 continue;
             }
 
-            String replacement = config.othersNameTemplate.replace("[ID]", getOrCreateShortId(uuid));
+            String replacement = target.maskedName(target.nameUsesShortId() ? getOrCreateShortId(uuid) : null);
             if (!replacement.equals(original)) {
                 replacements.put(original, replacement);
             }
@@ -78,90 +206,206 @@ public final class PlayerAliasService {
         return sorted;
     }
 
-    public synchronized String getOrCreateShortId(UUID uuid) {
-        String existing = uuidToShortId.get(uuid);
+    public String getOrCreateShortId(UUID uuid) {
+        AliasShard shard = activeShard;
+        String existing = shard.index().get(uuid);
         if (existing != null) {
             return existing;
         }
-
-        int salt = 0;
-        String candidate;
-        do {
-            candidate = candidateId(uuid, salt++);
-        } while (shortIdToUuid.containsKey(candidate) && !uuid.equals(shortIdToUuid.get(candidate)));
-
-        uuidToShortId.put(uuid, candidate);
-        shortIdToUuid.put(candidate, uuid);
-        persistCache();
-        return candidate;
+        return createShortId(shard, uuid);
     }
 
-    private String candidateId(UUID uuid, int salt) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] bytes = digest.digest((uuid + ":" + salt).getBytes(StandardCharsets.UTF_8));
+    /**
+     * Whether {@code uuid} already has an alias in the active namespace; never creates one.
+     */
+    boolean hasAlias(UUID uuid) {
+        return activeShard.index().get(uuid) != null;
+    }
 
-            long value = 0L;
-            for (int i = 0; i < 8; i++) {
-                value = (value << 8) | (bytes[i] & 0xFFL);
+    /**
+     * Computes missing aliases for a whole roster on the worker thread and publishes them to the active shard's
+     * index in one step, so render hooks reached afterwards only do lock-free lookups.
+     */
+    public void precompute(Collection<UUID> uuids) {
+        AliasShard shard = activeShard;
+        List<UUID> missing = new ArrayList<>();
+        for (UUID uuid : uuids) {
+            if (uuid != null && shard.index().get(uuid) == null) {
+                missing.add(uuid);
             }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
 
-            long modded = Long.remainderUnsigned(value, MAX_ID_SPACE);
-            String encoded = Long.toString(modded, 36).toLowerCase(Locale.ROOT);
-            return encoded.isEmpty() ? "0" : encoded;
-        } catch (NoSuchAlgorithmException ex) {
-            throw new IllegalStateException("SHA-256 unavailable", ex);
+        try {
+            // The shard is read on the worker, after any namespace load queued before it has been published.
+            worker.execute(() -> precomputeNow(activeShard, missing));
+        } catch (RuntimeException ex) {
+            NickHider.LOGGER.warn("Failed to schedule alias precomputation for {} players", missing.size(), ex);
         }
     }
 
-    private void loadCache() {
-        if (!Files.exists(cachePath)) {
-            return;
+    void precomputeNow(List<UUID> uuids) {
+        precomputeNow(activeShard, uuids);
+    }
+
+    private void precomputeNow(AliasShard shard, List<UUID> uuids) {
+        List<String> firstCandidates = new ArrayList<>(uuids.size());
+        for (UUID uuid : uuids) {
+            firstCandidates.add(candidateId(shard, uuid, 0));
         }
 
-        try (Reader reader = Files.newBufferedReader(cachePath, StandardCharsets.UTF_8)) {
-            JsonObject root = GSON.fromJson(reader, JsonObject.class);
-            if (root == null) {
+        AliasIndex index = shard.index();
+        Map<UUID, String> created = new LinkedHashMap<>();
+        synchronized (shard) {
+            if (shard.isRetired()) {
+                // The namespace was evicted after this batch was queued; it is recomputed when the server is re-joined.
                 return;
             }
+            Set<String> claimed = new HashSet<>();
+            for (int i = 0; i < uuids.size(); i++) {
+                UUID uuid = uuids.get(i);
+                if (created.containsKey(uuid) || index.get(uuid) != null) {
+                    continue;
+                }
+
+                int salt = 1;
+                String candidate = firstCandidates.get(i);
+                while (isTaken(index, candidate, uuid) || claimed.contains(candidate)) {
+                    candidate = candidateId(shard, uuid, salt++);
+                }
+                claimed.add(candidate);
+                created.put(uuid, candidate);
+            }
 
-            JsonObject aliases = root.getAsJsonObject("aliases");
-            if (aliases == null) {
+            if (created.isEmpty()) {
                 return;
             }
+            index.putAll(created);
+            shard.markCreated(created);
+        }
+        scheduleFlush();
+    }
+
+    private String createShortId(AliasShard shard, UUID uuid) {
+        AliasIndex index = shard.index();
+        String candidate;
+        synchronized (shard) {
+            String existing = index.get(uuid);
+            if (existing != null) {
+                return existing;
+            }
+            if (shard.isRetired()) {
+                candidate = null;
+            } else {
+                int salt = 0;
+                do {
+                    candidate = candidateId(shard, uuid, salt++);
+                } while (isTaken(index, candidate, uuid));
 
-            for (String key : aliases.keySet()) {
-                UUID uuid = UUID.fromString(key);
-                String shortId = aliases.get(key).getAsString();
-                uuidToShortId.put(uuid, shortId);
-                shortIdToUuid.put(shortId, uuid);
+                index.put(uuid, candidate);
+                shard.markCreated(uuid, candidate);
             }
-        } catch (IOException | JsonParseException | IllegalArgumentException ex) {
-            NickHider.LOGGER.warn("Failed to load alias cache from {}", cachePath, ex);
-            uuidToShortId.clear();
-            shortIdToUuid.clear();
+        }
+        if (candidate == null) {
+            // The shard was evicted since it was read; aliases belong to whichever shard is active now.
+            return getOrCreateShortId(uuid);
+        }
+        scheduleFlush();
+        return candidate;
+    }
+
+    private static boolean isTaken(AliasIndex index, String candidate, UUID uuid) {
+        UUID owner = index.ownerOf(candidate);
+        return owner != null && !uuid.equals(owner);
+    }
+
+    /**
+     * Writes pending aliases of every resident shard to disk now. New aliases are otherwise persisted by a
+     * write-behind task that coalesces every mutation made within the flush interval into one append per shard.
+     */
+    public void flush() {
+        globalShard.flush();
+        List<AliasShard> shards;
+        synchronized (residentShards) {
+            shards = new ArrayList<>(residentShards.values());
+        }
+        for (AliasShard shard : shards) {
+            shard.flush();
         }
     }
 
-    private void persistCache() {
-        JsonObject root = new JsonObject();
-        JsonObject aliases = new JsonObject();
+    private void scheduleFlush() {
+        if (!flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
 
-        for (Map.Entry<UUID, String> entry : uuidToShortId.entrySet()) {
-            aliases.addProperty(entry.getKey().toString(), entry.getValue());
+        try {
+            worker.schedule(() -> {
+                flushScheduled.set(false);
+                flush();
+            }, flushDelayMs, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException ex) {
+            flushScheduled.set(false);
+            NickHider.LOGGER.warn("[NH-ALIAS-FLUSH] Failed to schedule alias cache flush, writing synchronously", ex);
+            flush();
+        }
+    }
+
+    /**
+     * Derives alias candidates from the namespace too, so one player gets unrelated aliases on different servers.
+     * The global shard keeps the original derivation, which its stored aliases were created with.
+     */
+    private static String candidateId(AliasShard shard, UUID uuid, int salt) {
+        String seed = shard.namespace() == null ? uuid + ":" + salt : shard.namespace() + ":" + uuid + ":" + salt;
+        MessageDigest digest = SHA256.get();
+        byte[] bytes = digest.digest(seed.getBytes(StandardCharsets.UTF_8));
+
+        long value = 0L;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xFFL);
         }
 
-        root.add("aliases", aliases);
+        long modded = Long.remainderUnsigned(value, MAX_ID_SPACE);
+        String encoded = Long.toString(modded, 36).toLowerCase(Locale.ROOT);
+        return encoded.isEmpty() ? "0" : encoded;
+    }
 
+    private static MessageDigest newSha256() {
         try {
-            Files.createDirectories(cachePath.getParent());
-            Path temp = cachePath.resolveSibling(cachePath.getFileName() + ".tmp");
-            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
-                GSON.toJson(root, writer);
-            }
-            Files.move(temp, cachePath, java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
-        } catch (IOException ex) {
-            NickHider.LOGGER.error("Failed to persist alias cache at {}", cachePath, ex);
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 unavailable", ex);
+        }
+    }
+
+    static String namespaceKey(String serverAddress) {
+        if (serverAddress == null || serverAddress.isBlank()) {
+            return null;
         }
+
+        String normalized = serverAddress.trim().toLowerCase(Locale.ROOT);
+        StringBuilder key = new StringBuilder(normalized.length());
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            boolean safe = (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '.' || c == '-';
+            key.append(safe ? c : '_');
+        }
+        return key.toString();
+    }
+
+    private static String baseName(Path storePath) {
+        String fileName = storePath.getFileName().toString();
+        int extension = fileName.lastIndexOf('.');
+        return extension > 0 ? fileName.substring(0, extension) : fileName;
+    }
+
+    private static ScheduledExecutorService createDefaultWorker() {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "nickhider-alias-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 }
@@ -1,39 +1,54 @@
 package dev.przxmus.nickhider.core;
 
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import com.mojang.authlib.GameProfile;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.User;
-import net.minecraft.util.StringUtil;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.FormattedText;
 import dev.przxmus.nickhider.NickHider;
 import dev.przxmus.nickhider.config.ConfigRepository;
+import dev.przxmus.nickhider.config.ConfigSnapshot;
 import dev.przxmus.nickhider.config.PrivacyConfig;
 
 public final class PrivacyRuntimeState {
     private static final int SKIN_HOOK_FAILURE_THRESHOLD = 5;
     private static final long SKIN_HOOK_CIRCUIT_BREAKER_MS = 60_000L;
+    private static final long SKIN_MASK_REFRESH_MS = 30_000L;
 
     private final ConfigRepository configRepository;
+    private final PlayerAliasService aliasService;
     private final IdentityMaskingService identityMaskingService;
     private final SkinResolutionService skinResolutionService;
     private final TextSanitizer textSanitizer;
+    private final RosterTracker rosterTracker;
 
     private final AtomicInteger skinHookFailures = new AtomicInteger(0);
+    private final AtomicLong languageGeneration = new AtomicLong();
     private volatile long skinHookDisabledUntilMs;
+    private volatile MaskingPolicy policy = MaskingPolicy.compile(new ConfigSnapshot(-1L, new PrivacyConfig()));
+    private volatile TargetTable targets = new TargetTable(null, null, new ConcurrentHashMap<>());
 
     public PrivacyRuntimeState(
             ConfigRepository configRepository,
+            PlayerAliasService aliasService,
             IdentityMaskingService identityMaskingService,
             SkinResolutionService skinResolutionService,
-            TextSanitizer textSanitizer
+            TextSanitizer textSanitizer,
+            RosterTracker rosterTracker
     ) {
         this.configRepository = Objects.requireNonNull(configRepository, "configRepository");
+        this.aliasService = Objects.requireNonNull(aliasService, "aliasService");
         this.identityMaskingService = Objects.requireNonNull(identityMaskingService, "identityMaskingService");
         this.skinResolutionService = Objects.requireNonNull(skinResolutionService, "skinResolutionService");
         this.textSanitizer = Objects.requireNonNull(textSanitizer, "textSanitizer");
+        this.rosterTracker = Objects.requireNonNull(rosterTracker, "rosterTracker");
     }
 
     public PrivacyConfig config() {
@@ -52,7 +67,8 @@ public final class PrivacyRuntimeState {
 
     private void refreshSkinSourcesAfterConfigChange() {
         skinResolutionService.clearRuntimeCache();
-        skinResolutionService.forceRefreshSources(configRepository.get());
+        skinResolutionService.forceRefreshSources(configRepository.snapshot().config());
+        refreshRoster();
     }
 
     public String skinCapeStatusSummary() {
@@ -80,11 +96,126 @@ public final class PrivacyRuntimeState {
     }
 
     public String sanitizeText(String text) {
-        PrivacyConfig config = configRepository.get();
-        if (!config.enabled) {
+        MaskingPolicy policy = policy();
+        if (!policy.enabled()) {
             return text;
         }
-        return textSanitizer.sanitize(text, config);
+        return textSanitizer.sanitize(text, policy, currentRoster());
+    }
+
+    /**
+     * Sanitizes styled text across segment boundaries. Results are cached on the component instance until the
+     * compiled roster or the loaded language changes.
+     */
+    public FormattedText sanitizeFormatted(FormattedText text) {
+        MaskingPolicy policy = policy();
+        if (!policy.enabled() || text == null) {
+            return text;
+        }
+
+        RosterSnapshot roster = currentRoster();
+        if (roster.isEmpty()) {
+            return text;
+        }
+
+        long stamp = textSanitizer.stamp(policy, roster);
+        long language = languageGeneration.get();
+        SanitizedTextSlot slot = text instanceof SanitizedTextSlot candidate ? candidate : null;
+        SanitizedTextSlot.Cached cached = slot != null ? slot.nickhider$sanitized() : null;
+        if (cached != null && cached.stamp() == stamp && cached.languageGeneration() == language) {
+            return cached.text();
+        }
+
+        FormattedText sanitized = StyledTextSanitizer.sanitize(text, segments -> textSanitizer.sanitizeSegments(segments, policy, roster));
+        if (slot != null) {
+            slot.nickhider$setSanitized(new SanitizedTextSlot.Cached(stamp, language, sanitized));
+        }
+        return sanitized;
+    }
+
+    /**
+     * Identifies what {@link #sanitizeFormatted} currently produces: the compiled roster stamp, or {@code 0} while
+     * nothing is masked. Components compare it to decide whether their cached visual order is still sanitized.
+     */
+    public long sanitizeStamp() {
+        MaskingPolicy policy = policy();
+        if (!policy.enabled()) {
+            return 0L;
+        }
+
+        RosterSnapshot roster = currentRoster();
+        return roster.isEmpty() ? 0L : textSanitizer.stamp(policy, roster);
+    }
+
+    /**
+     * Sanitizes a nametag or tab list name while keeping every segment's style, including team prefixes and colours.
+     * The result is cached in {@code slot} and reused while an equal {@code displayName} is rendered under the same
+     * compiled roster and language; vanilla builds a fresh display name component every frame, so identity alone
+     * would never hit.
+     */
+    public Component sanitizeDisplayName(Component displayName, DisplayNameSlot slot) {
+        MaskingPolicy policy = policy();
+        if (!policy.enabled() || displayName == null) {
+            return displayName;
+        }
+
+        RosterSnapshot roster = currentRoster();
+        if (roster.isEmpty()) {
+            return displayName;
+        }
+
+        long stamp = textSanitizer.stamp(policy, roster);
+        long language = languageGeneration.get();
+        DisplayNameSlot.Cached cached = slot != null ? slot.nickhider$maskedDisplayName() : null;
+        if (cached != null
+                && cached.stamp() == stamp
+                && cached.languageGeneration() == language
+                && (cached.source() == displayName || cached.source().equals(displayName))) {
+            return cached.text();
+        }
+
+        Component sanitized = StyledTextSanitizer.sanitizeComponent(displayName, segments -> textSanitizer.sanitizeSegments(segments, policy, roster));
+        if (slot != null) {
+            slot.nickhider$setMaskedDisplayName(new DisplayNameSlot.Cached(displayName, stamp, language, sanitized));
+        }
+        return sanitized;
+    }
+
+    public void onLanguageLoaded(Map<String, String> storage) {
+        int indexed = textSanitizer.indexLanguageText(storage);
+        // Cached component rebuilds hold translations of the previous language.
+        languageGeneration.incrementAndGet();
+        NickHider.LOGGER.debug("[NH-LANG-INDEX] Indexed {} of {} language strings", indexed, storage.size());
+    }
+
+    private RosterSnapshot currentRoster() {
+        RosterSnapshot roster = rosterTracker.current();
+        if (roster.localIdentityUuid() == null && Minecraft.getInstance().player != null) {
+            return refreshRoster();
+        }
+        return roster;
+    }
+
+    private RosterSnapshot refreshRoster() {
+        RosterSnapshot roster = rosterTracker.refresh();
+        MaskingPolicy policy = policy();
+        textSanitizer.observeRoster(roster, policy);
+        if (policy.enabled()) {
+            aliasService.precompute(roster.namesByUuid().keySet());
+        }
+        return roster;
+    }
+
+    private MaskingPolicy policy() {
+        MaskingPolicy current = policy;
+        ConfigSnapshot snapshot = configRepository.snapshot();
+        if (current.version() == snapshot.version()) {
+            return current;
+        }
+
+        MaskingPolicy compiled = MaskingPolicy.compile(snapshot);
+        policy = compiled;
+        return compiled;
     }
 
     public Optional<ResolvedSkin> replacementSkin(UUID targetUuid) {
@@ -92,22 +223,30 @@ public final class PrivacyRuntimeState {
     }
 
     public Optional<ResolvedSkin> replacementSkin(UUID targetUuid, String targetName) {
-        PrivacyConfig config = configRepository.get();
+        MaskingPolicy policy = policy();
         Minecraft minecraft = Minecraft.getInstance();
-        if (!config.enabled || minecraft.player == null || targetUuid == null || isSkinCapeCircuitOpen()) {
+        if (!policy.enabled() || minecraft.player == null || targetUuid == null || isSkinCapeCircuitOpen()) {
             return Optional.empty();
         }
 
-        boolean local = isLocalTarget(targetUuid, targetName, minecraft);
-        if (local && !config.hideLocalSkin) {
-            return Optional.empty();
-        }
-        if (!local && !config.hideOtherSkins) {
+        MaskingPolicy.Target target = policy.target(isLocalTarget(targetUuid, targetName, minecraft));
+        if (!target.hideSkin()) {
             return Optional.empty();
         }
 
-        String sourceUser = local ? config.localSkinUser : config.othersSkinUser;
-        return Optional.of(skinResolutionService.resolveOrFallback(sourceUser, targetUuid, config.enableExternalFallbacks));
+        return Optional.of(skinResolutionService.resolveOrFallback(target.skinSourceUser(), targetUuid, policy.enableExternalFallbacks()));
+    }
+
+    /**
+     * Changes whenever skin overrides may resolve differently: on config, roster or resolved skin changes, and while
+     * the skin hook circuit breaker is open. Cheap enough to compare on every draw.
+     */
+    public int skinOverrideVersion() {
+        long version = configRepository.snapshot().version();
+        version = version * 31L + rosterTracker.current().epoch();
+        version = version * 31L + skinResolutionService.generation();
+        int hash = Long.hashCode(version);
+        return isSkinCapeCircuitOpen() ? ~hash : hash;
     }
 
     public boolean shouldOverrideCape(UUID targetUuid) {
@@ -115,16 +254,13 @@ public final class PrivacyRuntimeState {
     }
 
     public boolean shouldOverrideCape(UUID targetUuid, String targetName) {
-        PrivacyConfig config = configRepository.get();
+        MaskingPolicy policy = policy();
         Minecraft minecraft = Minecraft.getInstance();
-        if (!config.enabled || minecraft.player == null || targetUuid == null || isSkinCapeCircuitOpen()) {
+        if (!policy.enabled() || minecraft.player == null || targetUuid == null || isSkinCapeCircuitOpen()) {
             return false;
         }
 
-        if (isLocalTarget(targetUuid, targetName, minecraft)) {
-            return config.hideLocalCape;
-        }
-        return config.hideOtherCapes;
+        return policy.target(isLocalTarget(targetUuid, targetName, minecraft)).hideCape();
     }
 
     public Optional<ResolvedSkin> replacementCape(UUID targetUuid) {
@@ -132,41 +268,87 @@ public final class PrivacyRuntimeState {
     }
 
     public Optional<ResolvedSkin> replacementCape(UUID targetUuid, String targetName) {
-        if (!shouldOverrideCape(targetUuid, targetName)) {
+        MaskingPolicy policy = policy();
+        Minecraft minecraft = Minecraft.getInstance();
+        if (!policy.enabled() || minecraft.player == null || targetUuid == null || isSkinCapeCircuitOpen()) {
             return Optional.empty();
         }
 
-        PrivacyConfig config = configRepository.get();
-        Minecraft minecraft = Minecraft.getInstance();
-        boolean local = isLocalTarget(targetUuid, targetName, minecraft);
-        String sourceUser = local ? preferredCapeSource(config.localCapeUser, config.localSkinUser) : preferredCapeSource(config.othersCapeUser, config.othersSkinUser);
-        if (StringUtil.isNullOrEmpty(sourceUser)) {
+        MaskingPolicy.Target target = policy.target(isLocalTarget(targetUuid, targetName, minecraft));
+        String sourceUser = target.capeSourceUser();
+        if (!target.hideCape() || sourceUser == null) {
             return Optional.empty();
         }
 
-        ResolvedSkin replacement = skinResolutionService.resolveOrFallback(sourceUser, targetUuid, config.enableExternalFallbacks);
+        ResolvedSkin replacement = skinResolutionService.resolveOrFallback(sourceUser, targetUuid, policy.enableExternalFallbacks());
         if (replacement.capeTextureLocation() == null && replacement.elytraTextureLocation() == null) {
             return Optional.empty();
         }
         return Optional.of(replacement);
     }
 
-    private static String preferredCapeSource(String capeSourceUser, String skinSourceUser) {
-        if (!StringUtil.isNullOrEmpty(capeSourceUser)) {
-            return capeSourceUser;
+    /**
+     * Returns the skin and cape overrides for {@code profile}, reusing the value cached in {@code slot} until the
+     * policy, the resolved skins or the roster change. The cache also expires every {@link #SKIN_MASK_REFRESH_MS} so
+     * stale sources are still revalidated by {@link SkinResolutionService#resolveOrFallback}.
+     */
+    public SkinMaskSlot.Cached skinMask(GameProfile profile, SkinMaskSlot slot) {
+        MaskingPolicy policy = policy();
+        Minecraft minecraft = Minecraft.getInstance();
+        if (!policy.enabled() || minecraft.player == null || isSkinCapeCircuitOpen()) {
+            return SkinMaskSlot.Cached.NONE;
+        }
+
+        long skinGeneration = skinResolutionService.generation();
+        long rosterEpoch = rosterTracker.current().epoch();
+        long refreshBucket = System.currentTimeMillis() / SKIN_MASK_REFRESH_MS;
+        SkinMaskSlot.Cached cached = slot != null ? slot.nickhider$skinMask() : null;
+        if (cached != null && cached.isCurrent(policy.version(), skinGeneration, rosterEpoch, refreshBucket)) {
+            return cached;
+        }
+
+        UUID targetUuid = ProfileCompat.id(profile);
+        ResolvedSkin skin = null;
+        boolean overrideCape = false;
+        ResolvedSkin cape = null;
+        if (targetUuid != null) {
+            MaskingPolicy.Target target = policy.target(isLocalTarget(targetUuid, ProfileCompat.name(profile), minecraft));
+            if (target.hideSkin()) {
+                skin = skinResolutionService.resolveOrFallback(target.skinSourceUser(), targetUuid, policy.enableExternalFallbacks());
+            }
+            overrideCape = target.hideCape();
+            if (overrideCape && target.capeSourceUser() != null) {
+                ResolvedSkin candidate = skinResolutionService.resolveOrFallback(target.capeSourceUser(), targetUuid, policy.enableExternalFallbacks());
+                if (candidate.capeTextureLocation() != null || candidate.elytraTextureLocation() != null) {
+                    cape = candidate;
+                }
+            }
+        }
+
+        SkinMaskSlot.Cached resolved = new SkinMaskSlot.Cached(
+                policy.version(),
+                skinGeneration,
+                rosterEpoch,
+                refreshBucket,
+                skin,
+                overrideCape,
+                cape
+        );
+        if (slot != null) {
+            slot.nickhider$setSkinMask(resolved);
         }
-        return skinSourceUser;
+        return resolved;
     }
 
     public String replacementName(UUID targetUuid, String originalName) {
-        PrivacyConfig config = configRepository.get();
+        MaskingPolicy policy = policy();
         Minecraft minecraft = Minecraft.getInstance();
-        if (!config.enabled || minecraft.player == null || targetUuid == null || originalName == null) {
+        if (!policy.enabled() || minecraft.player == null || targetUuid == null || originalName == null) {
             return originalName;
         }
 
         boolean local = isLocalTarget(targetUuid, originalName, minecraft);
-        return identityMaskingService.maskForName(config, local, targetUuid, originalName).name();
+        return identityMaskingService.maskForName(policy, local, targetUuid, originalName).name();
     }
 
     public GameProfile maskProfileForName(UUID targetUuid, String originalName) {
@@ -178,9 +360,9 @@ public final class PrivacyRuntimeState {
     }
 
     private GameProfile maskProfile(UUID targetUuid, String originalName, boolean forHead) {
-        PrivacyConfig config = configRepository.get();
+        MaskingPolicy policy = policy();
         Minecraft minecraft = Minecraft.getInstance();
-        if (!config.enabled || minecraft.player == null || targetUuid == null) {
+        if (!policy.enabled() || minecraft.player == null || targetUuid == null) {
             return null;
         }
 
@@ -191,8 +373,8 @@ public final class PrivacyRuntimeState {
 
         boolean local = isLocalTarget(targetUuid, resolvedName, minecraft);
         MaskedProfile maskedProfile = forHead
-                ? identityMaskingService.maskForHead(config, local, targetUuid, resolvedName)
-                : identityMaskingService.maskForName(config, local, targetUuid, resolvedName);
+                ? identityMaskingService.maskForHead(policy, local, targetUuid, resolvedName)
+                : identityMaskingService.maskForName(policy, local, targetUuid, resolvedName);
 
         if (maskedProfile.isSameAs(targetUuid, resolvedName)) {
             return null;
@@ -201,67 +383,90 @@ public final class PrivacyRuntimeState {
         return maskedProfile.toGameProfile();
     }
 
-    private static String resolveRenderableName(UUID targetUuid, String originalName, Minecraft minecraft) {
+    private String resolveRenderableName(UUID targetUuid, String originalName, Minecraft minecraft) {
         if (originalName != null && !originalName.isBlank()) {
             return originalName;
         }
+        return targetInfo(targetUuid, null, minecraft).renderableName();
+    }
 
-        if (minecraft.getConnection() != null) {
-            for (var info : minecraft.getConnection().getOnlinePlayers()) {
-                UUID infoUuid = ProfileCompat.id(info.getProfile());
-                if (targetUuid.equals(infoUuid)) {
-                    String infoName = ProfileCompat.name(info.getProfile());
-                    if (infoName != null && !infoName.isBlank()) {
-                        return infoName;
-                    }
-                }
-            }
-        }
+    private boolean isLocalTarget(UUID targetUuid, String targetName, Minecraft minecraft) {
+        String name = targetName == null || targetName.isBlank() ? null : targetName;
+        TargetInfo info = targetInfo(targetUuid, name, minecraft);
+        return info.localByUuid() || (name != null && info.localByName());
+    }
 
+    /**
+     * Looks up the classification of {@code targetUuid}, probing a table that is dropped whenever the roster snapshot
+     * or the account changes. An entry is reclassified only when asked about a different non-blank name.
+     */
+    private TargetInfo targetInfo(UUID targetUuid, String name, Minecraft minecraft) {
+        RosterSnapshot roster = rosterTracker.current();
         User user = minecraft.getUser();
-        if (user != null) {
-            UUID accountUuid = user.getProfileId();
-            if (targetUuid.equals(accountUuid)) {
-                String accountName = user.getName();
-                if (accountName != null && !accountName.isBlank()) {
-                    return accountName;
-                }
-            }
+        TargetTable table = targets;
+        if (table.roster() != roster || table.user() != user) {
+            table = new TargetTable(roster, user, new ConcurrentHashMap<>());
+            targets = table;
+        }
+
+        TargetInfo info = table.byUuid().get(targetUuid);
+        if (info != null && (name == null || name.equals(info.name()))) {
+            return info;
         }
 
-        return targetUuid.toString().replace("-", "").substring(0, 16);
+        TargetInfo classified = classify(targetUuid, name, roster, user, minecraft);
+        table.byUuid().put(targetUuid, classified);
+        return classified;
     }
 
-    private static boolean isLocalTarget(UUID targetUuid, String targetName, Minecraft minecraft) {
-        User user = minecraft.getUser();
-        if (user != null) {
-            UUID accountUuid = user.getProfileId();
-            if (accountUuid != null && accountUuid.equals(targetUuid)) {
-                return true;
-            }
-        }
+    private static TargetInfo classify(UUID targetUuid, String name, RosterSnapshot roster, User user, Minecraft minecraft) {
+        UUID accountUuid = user != null ? user.getProfileId() : null;
+        String accountName = user != null ? user.getName() : null;
+        boolean hasAccountName = accountName != null && !accountName.isBlank();
 
-        if (minecraft.player != null && targetUuid.equals(minecraft.player.getUUID())) {
-            return true;
-        }
+        boolean localByUuid = targetUuid.equals(accountUuid)
+                || (minecraft.player != null && targetUuid.equals(minecraft.player.getUUID()));
+        boolean localByName = name != null && hasAccountName && name.equalsIgnoreCase(accountName);
 
-        if (targetName == null || targetName.isBlank() || user == null) {
-            return false;
+        String renderableName = roster.namesByUuid().get(targetUuid);
+        if (renderableName == null || renderableName.isBlank()) {
+            renderableName = targetUuid.equals(accountUuid) && hasAccountName
+                    ? accountName
+                    : targetUuid.toString().replace("-", "").substring(0, 16);
         }
-
-        String accountName = user.getName();
-        return accountName != null && !accountName.isBlank() && targetName.equalsIgnoreCase(accountName);
+        return new TargetInfo(localByUuid, name, localByName, renderableName);
     }
 
     public void onWorldJoin() {
+        aliasService.activateNamespace(currentServerAddress());
         skinResolutionService.clearRuntimeCache();
-        skinResolutionService.forceRefreshSources(configRepository.get());
+        skinResolutionService.forceRefreshSources(configRepository.snapshot().config());
         resetSkinCapeCircuitBreaker();
+        refreshRoster();
     }
 
     public void onWorldLeave() {
+        NickHider.LOGGER.info("[NH-TEXT-CACHE] Sanitized text cache {}", textSanitizer.cacheStats().summary());
         skinResolutionService.clearRuntimeCache();
         resetSkinCapeCircuitBreaker();
+        rosterTracker.clear();
+        aliasService.releaseNamespace();
+        aliasService.flush();
+        textSanitizer.flushKnownPlayers();
+    }
+
+    public void onShutdown() {
+        aliasService.flush();
+        textSanitizer.flushKnownPlayers();
+    }
+
+    public void onRosterChanged() {
+        refreshRoster();
+    }
+
+    private static String currentServerAddress() {
+        var server = Minecraft.getInstance().getCurrentServer();
+        return server == null ? null : server.ip;
     }
 
     private void resetSkinCapeCircuitBreaker() {
@@ -272,4 +477,13 @@ public final class PrivacyRuntimeState {
     private boolean isSkinCapeCircuitOpen() {
         return System.currentTimeMillis() < skinHookDisabledUntilMs;
     }
+
+    /**
+     * {@code localByName} applies to {@code name} only; {@code renderableName} is the fallback for blank names.
+     */
+    private record TargetInfo(boolean localByUuid, String name, boolean localByName, String renderableName) {
+    }
+
+    private record TargetTable(RosterSnapshot roster, User user, Map<UUID, TargetInfo> byUuid) {
+    }
 }
@@ -1,40 +1,56 @@
 package dev.przxmus.nickhider.core;
 
 import com.mojang.authlib.GameProfile;
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.UUID;
 
 public final class ProfileCompat {
+    private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, GameProfile.class);
+
+    // Bound once at class init; static final handles are constants the JIT can inline through.
+    private static final MethodHandle ID = accessor(UUID.class, "getId", "id");
+    private static final MethodHandle NAME = accessor(String.class, "getName", "name");
+
     private ProfileCompat() {}
 
     public static UUID id(GameProfile profile) {
-        if (profile == null) {
+        if (profile == null || ID == null) {
             return null;
         }
-        Object value = invokeNoArg(profile, "getId");
-        if (value == null) {
-            value = invokeNoArg(profile, "id");
-        }
+        Object value = invoke(ID, profile);
         return value instanceof UUID ? (UUID) value : null;
     }
 
     public static String name(GameProfile profile) {
-        if (profile == null) {
+        if (profile == null || NAME == null) {
             return null;
         }
-        Object value = invokeNoArg(profile, "getName");
-        if (value == null) {
-            value = invokeNoArg(profile, "name");
-        }
+        Object value = invoke(NAME, profile);
         return value instanceof String ? (String) value : null;
     }
 
-    private static Object invokeNoArg(Object target, String methodName) {
+    private static Object invoke(MethodHandle accessor, GameProfile profile) {
         try {
-            Method method = target.getClass().getMethod(methodName);
-            return method.invoke(target);
-        } catch (ReflectiveOperationException ignored) {
+            return (Object) accessor.invokeExact(profile);
+        } catch (Throwable ignored) {
             return null;
         }
     }
+
+    /**
+     * Resolves the bean-style accessor, or the record-style one used by newer authlib versions.
+     */
+    private static MethodHandle accessor(Class<?> type, String beanName, String recordName) {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        for (String name : new String[] {beanName, recordName}) {
+            try {
+                return lookup.findVirtual(GameProfile.class, name, MethodType.methodType(type)).asType(ACCESSOR_TYPE);
+            } catch (ReflectiveOperationException ignored) {
+                // Try the other naming convention.
+            }
+        }
+        return null;
+    }
 }
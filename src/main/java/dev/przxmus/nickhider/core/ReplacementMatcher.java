@@ -0,0 +1,467 @@
+package dev.przxmus.nickhider.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Aho-Corasick automaton that applies a whole replacement map in one left-to-right pass.
+ *
+ * <p>Overlapping candidates are resolved leftmost-first, and the longest pattern wins among candidates
+ * starting at the same index. When nothing matches, {@link #apply(String)} returns the input instance.
+ * Legacy &sect; formatting codes are transparent: <code>&sect;aPlay&sect;ber</code> matches {@code Player}, and codes
+ * inside a match are kept after its replacement.
+ *
+ * <p>Matchers can be stacked as {@link Layer}s and applied in one pass. A dictionary matcher
+ * ({@link #compileDictionary(List)}) carries no replacements and only matches whole words, so its layer resolves
+ * replacements lazily by pattern id; a layer can also suppress individual patterns without recompiling.
+ */
+final class ReplacementMatcher {
+    private static final int ROOT = 0;
+    private static final int ASCII_LIMIT = 128;
+    private static final char FORMAT_PREFIX = '\u00a7';
+    private static final ReplacementMatcher EMPTY = new ReplacementMatcher(Map.of());
+
+    private final String[] replacements;
+    private final int[] patternLengths;
+    private final boolean wordBounded;
+
+    private final int[] rootAscii;
+    private final int[] childStart;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    private final int[] fail;
+    private final int[] output;
+    private final int[] outputLink;
+    private final Layer[] ownLayer;
+
+    private ReplacementMatcher(Map<String, String> replacementsByPattern) {
+        this(patternsOf(replacementsByPattern), valuesOf(replacementsByPattern), false);
+    }
+
+    private ReplacementMatcher(List<String> patterns, String[] replacements, boolean wordBounded) {
+        this.replacements = replacements;
+        this.wordBounded = wordBounded;
+        this.patternLengths = new int[patterns.size()];
+
+        // Trie edges in creation order: state k + 1 is the target of edge k. A primitive (parent, char) table
+        // replaces per-node maps so dictionaries with 100k+ names build without boxing.
+        int capacity = 16;
+        for (String pattern : patterns) {
+            capacity += pattern == null ? 0 : pattern.length();
+        }
+        int[] edgeParents = new int[capacity];
+        char[] createdChars = new char[capacity];
+        int[] stateOutput = new int[capacity + 1];
+        Arrays.fill(stateOutput, -1);
+        EdgeTable edges = new EdgeTable(capacity);
+        int edgeCount = 0;
+        for (int id = 0; id < patterns.size(); id++) {
+            String pattern = patterns.get(id);
+            if (pattern == null || pattern.isEmpty()) {
+                continue;
+            }
+            patternLengths[id] = pattern.length();
+            int node = ROOT;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                int next = edges.get(node, c);
+                if (next < 0) {
+                    edgeParents[edgeCount] = node;
+                    createdChars[edgeCount] = c;
+                    next = ++edgeCount;
+                    edges.put(node, c, next);
+                }
+                node = next;
+            }
+            stateOutput[node] = id;
+        }
+
+        int stateCount = edgeCount + 1;
+        this.childStart = new int[stateCount + 1];
+        this.edgeChars = new char[edgeCount];
+        this.edgeTargets = new int[edgeCount];
+        this.fail = new int[stateCount];
+        this.output = Arrays.copyOf(stateOutput, stateCount);
+        this.outputLink = new int[stateCount];
+        this.rootAscii = new int[ASCII_LIMIT];
+        Arrays.fill(rootAscii, ROOT);
+
+        // Counting sort by parent, then order each sibling range by char for binary search.
+        for (int e = 0; e < edgeCount; e++) {
+            childStart[edgeParents[e] + 1]++;
+        }
+        for (int state = 0; state < stateCount; state++) {
+            childStart[state + 1] += childStart[state];
+        }
+        int[] fill = Arrays.copyOf(childStart, stateCount);
+        for (int e = 0; e < edgeCount; e++) {
+            int slot = fill[edgeParents[e]]++;
+            edgeChars[slot] = createdChars[e];
+            edgeTargets[slot] = e + 1;
+        }
+        for (int state = 0; state < stateCount; state++) {
+            sortSiblings(childStart[state], childStart[state + 1]);
+        }
+
+        for (int i = childStart[ROOT]; i < childStart[ROOT + 1]; i++) {
+            if (edgeChars[i] < ASCII_LIMIT) {
+                rootAscii[edgeChars[i]] = edgeTargets[i];
+            }
+        }
+
+        buildFailureLinks();
+        this.ownLayer = new Layer[] {new Layer(this, null, null)};
+    }
+
+    static ReplacementMatcher compile(Map<String, String> replacementsByPattern) {
+        if (replacementsByPattern == null || replacementsByPattern.isEmpty()) {
+            return EMPTY;
+        }
+        return new ReplacementMatcher(replacementsByPattern);
+    }
+
+    /**
+     * Builds a whole-word matcher over {@code patterns}; match indexes refer to positions in that list. Empty or
+     * {@code null} patterns never match but keep their index.
+     */
+    static ReplacementMatcher compileDictionary(List<String> patterns) {
+        return new ReplacementMatcher(patterns, null, true);
+    }
+
+    boolean isEmpty() {
+        return patternLengths.length == 0;
+    }
+
+    String apply(String text) {
+        return apply(text, ownLayer);
+    }
+
+    /**
+     * Runs several matchers in one pass. Among candidates starting at the same index the longest wins and earlier
+     * layers win ties. A {@code null} replacement from a layer's resolver leaves that match untouched.
+     */
+    static String apply(String text, Layer[] layers) {
+        if (text == null || text.isEmpty()) {
+            return text;
+        }
+        TextEdits edits = new TextEdits();
+        collect(text, 0, text.length(), layers, edits);
+        return edits.applyTo(text);
+    }
+
+    /**
+     * Records the replacements {@link #apply(String, Layer[])} would make in {@code text[from, to)}, treating the
+     * range bounds as text edges for whole-word checks.
+     */
+    static void collect(String text, int from, int to, Layer[] layers, TextEdits edits) {
+        if (to <= from) {
+            return;
+        }
+
+        // Entries are (pattern id * layer count + layer) plus one; zero means no candidate at that start.
+        int[] bestAtStart = null;
+        for (int layer = 0; layer < layers.length; layer++) {
+            bestAtStart = layers[layer].matcher().collectMatches(text, from, to, bestAtStart, layers, layer);
+        }
+        if (bestAtStart == null) {
+            return;
+        }
+
+        int i = from;
+        while (i < to) {
+            int code = bestAtStart[i - from];
+            if (code == 0) {
+                i++;
+                continue;
+            }
+
+            Layer layer = layers[(code - 1) % layers.length];
+            int id = (code - 1) / layers.length;
+            String replacement = layer.resolver() != null ? layer.resolver().apply(id) : layer.matcher().replacements[id];
+            if (replacement == null) {
+                i++;
+                continue;
+            }
+            int patternLength = layer.matcher().patternLengths[id];
+            int end = visibleEnd(text, i, patternLength);
+            // Formatting codes inside the match follow the replacement so the style after it is unchanged.
+            edits.add(i, end, end - i == patternLength ? replacement : replacement + formattingCodes(text, i, end));
+            i = end;
+        }
+    }
+
+    /**
+     * Pattern id of {@code pattern}, or -1 when it is not one of this matcher's patterns.
+     */
+    int idOf(String pattern) {
+        int state = ROOT;
+        for (int i = 0; i < pattern.length(); i++) {
+            state = child(state, pattern.charAt(i));
+            if (state <= ROOT) {
+                return -1;
+            }
+        }
+        return state == ROOT ? -1 : output[state];
+    }
+
+    private int[] collectMatches(String text, int from, int to, int[] bestAtStart, Layer[] layers, int layer) {
+        if (isEmpty()) {
+            return bestAtStart;
+        }
+
+        IntPredicate suppressed = layers[layer].suppressed();
+        int[] best = bestAtStart;
+        int state = ROOT;
+        boolean formatted = false;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c == FORMAT_PREFIX) {
+                // A formatting code and its argument are invisible to the automaton.
+                formatted = true;
+                i++;
+                continue;
+            }
+
+            state = step(state, c);
+            int matchState = output[state] >= 0 ? state : outputLink[state];
+            while (matchState >= 0) {
+                int id = output[matchState];
+                int patternLength = patternLengths[id];
+                int start = formatted ? visibleStart(text, from, i, patternLength) : i - patternLength + 1;
+                matchState = outputLink[matchState];
+                if ((wordBounded && !isWholeWord(text, start, i + 1, from, to)) || (suppressed != null && suppressed.test(id))) {
+                    continue;
+                }
+
+                if (best == null) {
+                    best = new int[to - from];
+                }
+                int current = best[start - from];
+                int currentLength = current == 0 ? 0
+                        : layers[(current - 1) % layers.length].matcher().patternLengths[(current - 1) / layers.length];
+                if (patternLength > currentLength) {
+                    best[start - from] = id * layers.length + layer + 1;
+                }
+            }
+        }
+        return best;
+    }
+
+    private static boolean isWholeWord(String text, int start, int end, int from, int to) {
+        int before = start - 1;
+        while (before >= from && isFormatting(text, from, before)) {
+            before--;
+        }
+        int after = end;
+        while (after < to && text.charAt(after) == FORMAT_PREFIX) {
+            after += 2;
+        }
+        return (before < from || !isWordChar(text.charAt(before))) && (after >= to || !isWordChar(text.charAt(after)));
+    }
+
+    /**
+     * Whether {@code text[index]} belongs to a formatting code: a section sign, or the character after an odd run
+     * of them, matching how the scan pairs them left to right from {@code from}.
+     */
+    private static boolean isFormatting(String text, int from, int index) {
+        if (text.charAt(index) == FORMAT_PREFIX) {
+            return true;
+        }
+        int run = 0;
+        for (int k = index - 1; k >= from && text.charAt(k) == FORMAT_PREFIX; k--) {
+            run++;
+        }
+        return (run & 1) == 1;
+    }
+
+    /**
+     * Start of the match whose last visible character is at {@code last}, skipping formatting codes.
+     */
+    private static int visibleStart(String text, int from, int last, int visibleLength) {
+        int remaining = visibleLength;
+        int index = last;
+        while (true) {
+            if (!isFormatting(text, from, index) && --remaining == 0) {
+                return index;
+            }
+            index--;
+        }
+    }
+
+    /**
+     * End of the match that starts at the visible character {@code start}, skipping formatting codes.
+     */
+    private static int visibleEnd(String text, int start, int visibleLength) {
+        int remaining = visibleLength;
+        int index = start;
+        while (remaining > 0) {
+            if (text.charAt(index) == FORMAT_PREFIX) {
+                index += 2;
+            } else {
+                index++;
+                remaining--;
+            }
+        }
+        return index;
+    }
+
+    private static String formattingCodes(String text, int start, int end) {
+        StringBuilder codes = new StringBuilder();
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == FORMAT_PREFIX) {
+                codes.append(text, i, Math.min(i + 2, end));
+                i++;
+            }
+        }
+        return codes.toString();
+    }
+
+    private static boolean isWordChar(char c) {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+
+    private static List<String> patternsOf(Map<String, String> replacementsByPattern) {
+        List<String> patterns = new ArrayList<>(replacementsByPattern.size());
+        for (Map.Entry<String, String> entry : replacementsByPattern.entrySet()) {
+            if (entry.getKey() != null && !entry.getKey().isEmpty() && entry.getValue() != null) {
+                patterns.add(entry.getKey());
+            }
+        }
+        return patterns;
+    }
+
+    private static String[] valuesOf(Map<String, String> replacementsByPattern) {
+        List<String> values = new ArrayList<>(replacementsByPattern.size());
+        for (Map.Entry<String, String> entry : replacementsByPattern.entrySet()) {
+            if (entry.getKey() != null && !entry.getKey().isEmpty() && entry.getValue() != null) {
+                values.add(entry.getValue());
+            }
+        }
+        return values.toArray(String[]::new);
+    }
+
+    private void sortSiblings(int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            char c = edgeChars[i];
+            int target = edgeTargets[i];
+            int j = i - 1;
+            while (j >= from && edgeChars[j] > c) {
+                edgeChars[j + 1] = edgeChars[j];
+                edgeTargets[j + 1] = edgeTargets[j];
+                j--;
+            }
+            edgeChars[j + 1] = c;
+            edgeTargets[j + 1] = target;
+        }
+    }
+
+    private int step(int state, char c) {
+        int current = state;
+        while (true) {
+            if (current == ROOT) {
+                return c < ASCII_LIMIT ? rootAscii[c] : child(ROOT, c);
+            }
+            int next = child(current, c);
+            if (next >= 0) {
+                return next;
+            }
+            current = fail[current];
+        }
+    }
+
+    private int child(int state, char c) {
+        int low = childStart[state];
+        int high = childStart[state + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char edgeChar = edgeChars[mid];
+            if (edgeChar < c) {
+                low = mid + 1;
+            } else if (edgeChar > c) {
+                high = mid - 1;
+            } else {
+                return edgeTargets[mid];
+            }
+        }
+        return state == ROOT ? ROOT : -1;
+    }
+
+    private void buildFailureLinks() {
+        Arrays.fill(outputLink, -1);
+        int[] queue = new int[fail.length];
+        int head = 0;
+        int tail = 0;
+        for (int i = childStart[ROOT]; i < childStart[ROOT + 1]; i++) {
+            int target = edgeTargets[i];
+            fail[target] = ROOT;
+            queue[tail++] = target;
+        }
+
+        while (head < tail) {
+            int state = queue[head++];
+            for (int i = childStart[state]; i < childStart[state + 1]; i++) {
+                int target = edgeTargets[i];
+                int fallback = step(fail[state], edgeChars[i]);
+                fail[target] = fallback;
+                outputLink[target] = output[fallback] >= 0 ? fallback : outputLink[fallback];
+                queue[tail++] = target;
+            }
+        }
+    }
+
+    /**
+     * Build-time open-addressing map from (parent state, char) to child state.
+     */
+    private static final class EdgeTable {
+        private final long[] keys;
+        private final int[] values;
+
+        private EdgeTable(int edges) {
+            int capacity = 16;
+            while (capacity < edges * 2) {
+                capacity <<= 1;
+            }
+            this.keys = new long[capacity];
+            this.values = new int[capacity];
+            Arrays.fill(values, -1);
+        }
+
+        private int get(int parent, char c) {
+            long key = ((long) parent << 16) | c;
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; values[slot] >= 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+            return -1;
+        }
+
+        private void put(int parent, char c, int child) {
+            long key = ((long) parent << 16) | c;
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (values[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = child;
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    /**
+     * One matcher in a layered pass. {@code resolver} overrides the compiled replacements and {@code suppressed}
+     * hides pattern ids; either may be {@code null}.
+     */
+    record Layer(ReplacementMatcher matcher, IntFunction<String> resolver, IntPredicate suppressed) {
+    }
+}
@@ -0,0 +1,330 @@
+package dev.przxmus.nickhider.core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import dev.przxmus.nickhider.NickHider;
+
+/**
+ * Name and UUID patterns for the current roster, updated incrementally as players join and leave.
+ *
+ * <p>Each published {@link Patterns} is a compiled base plus a small overlay: a delta matcher holding names added or
+ * re-masked since the base was built, tombstones hiding base names that changed, and UUID changes layered over the
+ * base rewriter. A roster change only recompiles the overlay, so its cost follows the changed names rather than the
+ * roster size. Once the overlay grows past {@link #OVERLAY_REBUILD_THRESHOLD} entries a fresh base is compiled on a
+ * background worker and swapped in; changes made meanwhile carry over as the new overlay.
+ *
+ * <p>Each generation also carries a {@link TextPrefilter}; the overlay only ever adds names to it, so it stays
+ * conservative until the next base rebuild.
+ *
+ * <p>A change of masking inputs (policy, alias namespace or local identity) rebuilds everything synchronously.
+ */
+final class RosterPatternIndex {
+    static final int OVERLAY_REBUILD_THRESHOLD = 64;
+
+    private final Executor worker;
+
+    private final Map<UUID, Entry> entries = new HashMap<>();
+    private final Map<String, UUID> ownersByName = new HashMap<>();
+    private final Map<String, Integer> holdersByName = new HashMap<>();
+    private MaskingInputs inputs;
+    private long rosterEpoch = Long.MIN_VALUE;
+
+    private ReplacementMatcher baseNames = ReplacementMatcher.compile(Map.of());
+    private UuidTokenRewriter baseUuids = UuidTokenRewriter.compile(Map.of());
+    private TextPrefilter baseFilter = TextPrefilter.NONE;
+    // Names and UUIDs whose live state may differ from the base; values are the live state.
+    private final Map<String, String> nameChanges = new HashMap<>();
+    private final Map<UUID, UUID> uuidChanges = new HashMap<>();
+    // Keys changed since the in-flight rebuild took its snapshot, or null when none is running.
+    private Set<String> namesChangedDuringRebuild;
+    private Set<UUID> uuidsChangedDuringRebuild;
+    private long baseSerial;
+
+    private volatile Patterns current = Patterns.EMPTY;
+
+    RosterPatternIndex() {
+        this(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "nickhider-roster-index");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    RosterPatternIndex(Executor worker) {
+        this.worker = worker;
+    }
+
+    /**
+     * Per-player masking result; {@code replacement} and {@code maskedUuid} are {@code null} when that part of the
+     * identity stays visible.
+     */
+    record Entry(String name, String replacement, UUID maskedUuid) {
+    }
+
+    /**
+     * Values that decide every entry at once; when they change the whole index is rebuilt.
+     */
+    record MaskingInputs(MaskingPolicy policy, long aliasGeneration, UUID localIdentityUuid) {
+    }
+
+    @FunctionalInterface
+    interface EntryFactory {
+        Entry create(UUID uuid, String name);
+    }
+
+    /**
+     * Compiled patterns for one roster epoch. Name layers run in one pass: the overlay delta first, then the base
+     * with tombstoned ids suppressed.
+     */
+    record Patterns(
+            long epoch,
+            MaskingInputs inputs,
+            ReplacementMatcher.Layer[] nameLayers,
+            UuidTokenRewriter uuids,
+            TextPrefilter prefilter
+    ) {
+        static final Patterns EMPTY = new Patterns(Long.MIN_VALUE, null, new ReplacementMatcher.Layer[0], UuidTokenRewriter.compile(Map.of()), TextPrefilter.NONE);
+    }
+
+    /**
+     * Brings the index up to {@code roster}, creating entries only for players that are new or renamed.
+     */
+    Patterns sync(RosterSnapshot roster, MaskingInputs maskingInputs, EntryFactory factory) {
+        Patterns published = current;
+        if (published.epoch() == roster.epoch() && maskingInputs.equals(published.inputs())) {
+            return published;
+        }
+
+        synchronized (this) {
+            if (rosterEpoch == roster.epoch() && maskingInputs.equals(inputs)) {
+                return current;
+            }
+
+            if (!maskingInputs.equals(inputs)) {
+                resetBase(roster, maskingInputs, factory);
+            } else {
+                applyRosterChanges(roster, factory);
+            }
+            rosterEpoch = roster.epoch();
+            return publish();
+        }
+    }
+
+    Patterns current() {
+        return current;
+    }
+
+    synchronized int overlaySize() {
+        return nameChanges.size() + uuidChanges.size();
+    }
+
+    private void applyRosterChanges(RosterSnapshot roster, EntryFactory factory) {
+        Map<UUID, String> names = roster.namesByUuid();
+        Iterator<Map.Entry<UUID, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<UUID, Entry> indexed = iterator.next();
+            String name = names.get(indexed.getKey());
+            if (name == null || !name.equals(indexed.getValue().name())) {
+                iterator.remove();
+                retract(indexed.getKey(), indexed.getValue());
+            }
+        }
+
+        for (Map.Entry<UUID, String> player : names.entrySet()) {
+            UUID uuid = player.getKey();
+            String name = player.getValue();
+            if (uuid == null || name == null || name.isBlank() || entries.containsKey(uuid)) {
+                continue;
+            }
+            Entry entry = factory.create(uuid, name);
+            entries.put(uuid, entry);
+            admit(uuid, entry);
+        }
+    }
+
+    private void retract(UUID uuid, Entry entry) {
+        String name = entry.replacement() != null ? entry.name() : null;
+        if (name != null && holdersByName.merge(name, -1, Integer::sum) <= 0) {
+            holdersByName.remove(name);
+            ownersByName.remove(name);
+            recordNameChange(name, null);
+        } else if (name != null && uuid.equals(ownersByName.get(name))) {
+            // Another player still carries this name, so the pattern moves to them instead of disappearing.
+            Map.Entry<UUID, Entry> heir = findHolder(name);
+            ownersByName.put(name, heir.getKey());
+            recordNameChange(name, heir.getValue().replacement());
+        }
+        if (entry.maskedUuid() != null) {
+            recordUuidChange(uuid, null);
+        }
+    }
+
+    private void admit(UUID uuid, Entry entry) {
+        if (entry.replacement() != null) {
+            holdersByName.merge(entry.name(), 1, Integer::sum);
+            ownersByName.put(entry.name(), uuid);
+            recordNameChange(entry.name(), entry.replacement());
+        }
+        if (entry.maskedUuid() != null) {
+            recordUuidChange(uuid, entry.maskedUuid());
+        }
+    }
+
+    private Map.Entry<UUID, Entry> findHolder(String name) {
+        for (Map.Entry<UUID, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().replacement() != null && name.equals(entry.getValue().name())) {
+                return entry;
+            }
+        }
+        throw new IllegalStateException("No remaining holder for " + name);
+    }
+
+    private void recordNameChange(String name, String replacement) {
+        nameChanges.put(name, replacement);
+        if (namesChangedDuringRebuild != null) {
+            namesChangedDuringRebuild.add(name);
+        }
+    }
+
+    private void recordUuidChange(UUID uuid, UUID maskedUuid) {
+        uuidChanges.put(uuid, maskedUuid);
+        if (uuidsChangedDuringRebuild != null) {
+            uuidsChangedDuringRebuild.add(uuid);
+        }
+    }
+
+    private void resetBase(RosterSnapshot roster, MaskingInputs maskingInputs, EntryFactory factory) {
+        inputs = maskingInputs;
+        entries.clear();
+        ownersByName.clear();
+        holdersByName.clear();
+        for (Map.Entry<UUID, String> player : roster.namesByUuid().entrySet()) {
+            UUID uuid = player.getKey();
+            String name = player.getValue();
+            if (uuid == null || name == null || name.isBlank()) {
+                continue;
+            }
+            Entry entry = factory.create(uuid, name);
+            entries.put(uuid, entry);
+            if (entry.replacement() != null) {
+                holdersByName.merge(name, 1, Integer::sum);
+                ownersByName.put(name, uuid);
+            }
+        }
+
+        baseSerial++;
+        Map<String, String> names = liveNames();
+        baseNames = ReplacementMatcher.compile(names);
+        baseUuids = UuidTokenRewriter.compile(liveUuids());
+        baseFilter = TextPrefilter.ofNames(names.keySet());
+        nameChanges.clear();
+        uuidChanges.clear();
+        namesChangedDuringRebuild = null;
+        uuidsChangedDuringRebuild = null;
+    }
+
+    private Patterns publish() {
+        Map<String, String> added = new LinkedHashMap<>();
+        int[] tombstones = new int[nameChanges.size()];
+        int tombstoneCount = 0;
+        for (Map.Entry<String, String> change : nameChanges.entrySet()) {
+            if (change.getValue() != null) {
+                added.put(change.getKey(), change.getValue());
+            }
+            int baseId = baseNames.idOf(change.getKey());
+            if (baseId >= 0) {
+                tombstones[tombstoneCount++] = baseId;
+            }
+        }
+
+        int[] suppressed = Arrays.copyOf(tombstones, tombstoneCount);
+        Arrays.sort(suppressed);
+        ReplacementMatcher.Layer baseLayer = new ReplacementMatcher.Layer(
+                baseNames,
+                null,
+                suppressed.length == 0 ? null : id -> Arrays.binarySearch(suppressed, id) >= 0
+        );
+        ReplacementMatcher.Layer[] layers = added.isEmpty()
+                ? new ReplacementMatcher.Layer[] {baseLayer}
+                : new ReplacementMatcher.Layer[] {new ReplacementMatcher.Layer(ReplacementMatcher.compile(added), null, null), baseLayer};
+
+        UuidTokenRewriter uuids = baseUuids.withChanges(new HashMap<>(uuidChanges));
+        TextPrefilter prefilter = baseFilter.withNames(added.keySet()).withUuids(!uuids.isEmpty());
+        Patterns next = new Patterns(rosterEpoch, inputs, layers, uuids, prefilter);
+        current = next;
+        if (overlaySize() > OVERLAY_REBUILD_THRESHOLD && namesChangedDuringRebuild == null) {
+            scheduleRebuild();
+        }
+        return next;
+    }
+
+    private void scheduleRebuild() {
+        namesChangedDuringRebuild = new HashSet<>();
+        uuidsChangedDuringRebuild = new HashSet<>();
+        long serial = baseSerial;
+        Map<String, String> names = liveNames();
+        Map<UUID, UUID> uuids = liveUuids();
+        try {
+            worker.execute(() -> rebuildBase(serial, names, uuids));
+        } catch (RejectedExecutionException ex) {
+            namesChangedDuringRebuild = null;
+            uuidsChangedDuringRebuild = null;
+            NickHider.LOGGER.warn("Failed to schedule roster pattern rebuild", ex);
+        }
+    }
+
+    private void rebuildBase(long serial, Map<String, String> names, Map<UUID, UUID> uuids) {
+        long startedAt = System.nanoTime();
+        ReplacementMatcher rebuiltNames = ReplacementMatcher.compile(names);
+        UuidTokenRewriter rebuiltUuids = UuidTokenRewriter.compile(uuids);
+        TextPrefilter rebuiltFilter = TextPrefilter.ofNames(names.keySet());
+
+        synchronized (this) {
+            if (serial != baseSerial) {
+                return;
+            }
+            baseSerial++;
+            baseNames = rebuiltNames;
+            baseUuids = rebuiltUuids;
+            baseFilter = rebuiltFilter;
+            nameChanges.keySet().retainAll(namesChangedDuringRebuild);
+            uuidChanges.keySet().retainAll(uuidsChangedDuringRebuild);
+            namesChangedDuringRebuild = null;
+            uuidsChangedDuringRebuild = null;
+            publish();
+        }
+        NickHider.LOGGER.debug(
+                "[NH-ROSTER-INDEX] Rebuilt roster patterns with {} names in {} ms",
+                names.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)
+        );
+    }
+
+    private Map<String, String> liveNames() {
+        Map<String, String> names = new HashMap<>(ownersByName.size() * 2);
+        for (Map.Entry<String, UUID> owner : ownersByName.entrySet()) {
+            names.put(owner.getKey(), entries.get(owner.getValue()).replacement());
+        }
+        return names;
+    }
+
+    private Map<UUID, UUID> liveUuids() {
+        Map<UUID, UUID> uuids = new HashMap<>(entries.size() * 2);
+        for (Map.Entry<UUID, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().maskedUuid() != null) {
+                uuids.put(entry.getKey(), entry.getValue().maskedUuid());
+            }
+        }
+        return uuids;
+    }
+}
@@ -0,0 +1,15 @@
+package dev.przxmus.nickhider.core;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Immutable view of the players known to the client, tagged with the epoch it was published at.
+ */
+public record RosterSnapshot(long epoch, Map<UUID, String> namesByUuid, UUID localIdentityUuid) {
+    public static final RosterSnapshot EMPTY = new RosterSnapshot(0L, Map.of(), null);
+
+    public boolean isEmpty() {
+        return namesByUuid.isEmpty();
+    }
+}
@@ -0,0 +1,85 @@
+package dev.przxmus.nickhider.core;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.User;
+import net.minecraft.client.multiplayer.PlayerInfo;
+import net.minecraft.client.player.LocalPlayer;
+
+/**
+ * Publishes {@link RosterSnapshot}s when the online player list changes, so render hooks only read a volatile reference.
+ */
+public final class RosterTracker {
+    private volatile RosterSnapshot current = RosterSnapshot.EMPTY;
+    private long epoch;
+
+    public RosterSnapshot current() {
+        return current;
+    }
+
+    public synchronized RosterSnapshot refresh() {
+        Minecraft minecraft = Minecraft.getInstance();
+        LocalPlayer localPlayer = minecraft != null ? minecraft.player : null;
+        if (localPlayer == null) {
+            return publish(Map.of(), null);
+        }
+
+        Map<UUID, String> names = new LinkedHashMap<>();
+        String localName = ProfileCompat.name(localPlayer.getGameProfile());
+        if (localName != null) {
+            names.put(localPlayer.getUUID(), localName);
+        }
+
+        if (minecraft.getConnection() != null) {
+            for (PlayerInfo info : minecraft.getConnection().getOnlinePlayers()) {
+                UUID profileId = ProfileCompat.id(info.getProfile());
+                String profileName = ProfileCompat.name(info.getProfile());
+                if (profileId == null || profileName == null) {
+                    continue;
+                }
+                names.put(profileId, profileName);
+            }
+        }
+
+        UUID localIdentityUuid = resolveLocalIdentityUuid(minecraft, localPlayer, names);
+        return publish(Collections.unmodifiableMap(names), localIdentityUuid);
+    }
+
+    public synchronized void clear() {
+        publish(Map.of(), null);
+    }
+
+    private RosterSnapshot publish(Map<UUID, String> names, UUID localIdentityUuid) {
+        RosterSnapshot next = new RosterSnapshot(++epoch, names, localIdentityUuid);
+        current = next;
+        return next;
+    }
+
+    private static UUID resolveLocalIdentityUuid(Minecraft minecraft, LocalPlayer localPlayer, Map<UUID, String> names) {
+        User user = minecraft.getUser();
+        if (user != null) {
+            UUID accountUuid = user.getProfileId();
+            if (accountUuid != null && names.containsKey(accountUuid)) {
+                return accountUuid;
+            }
+
+            String accountName = user.getName();
+            if (accountName != null && !accountName.isBlank()) {
+                for (Map.Entry<UUID, String> entry : names.entrySet()) {
+                    if (accountName.equalsIgnoreCase(entry.getValue())) {
+                        return entry.getKey();
+                    }
+                }
+            }
+
+            if (accountUuid != null) {
+                return accountUuid;
+            }
+        }
+
+        return localPlayer.getUUID();
+    }
+}
@@ -0,0 +1,113 @@
+package dev.przxmus.nickhider.core;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of sanitized strings, dropped wholesale whenever the sanitization epoch changes.
+ *
+ * <p>Lookups are lock-free reads of a {@link ConcurrentHashMap}; a hit only sets the entry's reference bit. Eviction
+ * is approximate: once the map grows past {@code maxEntries}, one writer sweeps it CLOCK-style, giving referenced
+ * entries a second chance and dropping the rest until an eighth of the capacity is free again.
+ */
+final class SanitizedTextCache {
+    private final int maxEntries;
+    private final int maxTextLength;
+    private final AtomicBoolean evicting = new AtomicBoolean(false);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile Generation generation = new Generation(Long.MIN_VALUE, new ConcurrentHashMap<>());
+
+    SanitizedTextCache(int maxEntries, int maxTextLength) {
+        this.maxEntries = maxEntries;
+        this.maxTextLength = maxTextLength;
+    }
+
+    String get(String text, long currentEpoch) {
+        Generation current = generation;
+        if (current.epoch() != currentEpoch) {
+            // Racing readers may each start a generation; the losers' entries are simply recomputed.
+            current = new Generation(currentEpoch, new ConcurrentHashMap<>(Math.min(maxEntries, 1024)));
+            generation = current;
+        }
+
+        Entry cached = current.entries().get(text);
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+        if (!cached.referenced) {
+            cached.referenced = true;
+        }
+        hits.increment();
+        return cached.sanitized;
+    }
+
+    void put(String text, String sanitized, long currentEpoch) {
+        Generation current = generation;
+        if (current.epoch() != currentEpoch || text.length() > maxTextLength) {
+            return;
+        }
+        current.entries().put(text, new Entry(sanitized));
+        if (current.entries().size() > maxEntries) {
+            evict(current.entries());
+        }
+    }
+
+    int size() {
+        return generation.entries().size();
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    private void evict(ConcurrentHashMap<String, Entry> entries) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            int target = maxEntries - maxEntries / 8;
+            Iterator<Entry> hand = entries.values().iterator();
+            boolean wrapped = false;
+            while (entries.size() > target) {
+                if (!hand.hasNext()) {
+                    if (wrapped) {
+                        return;
+                    }
+                    // The first lap cleared every reference bit it passed, so the second lap can always evict.
+                    hand = entries.values().iterator();
+                    wrapped = true;
+                    continue;
+                }
+                Entry entry = hand.next();
+                if (entry.referenced) {
+                    entry.referenced = false;
+                } else {
+                    hand.remove();
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private record Generation(long epoch, ConcurrentHashMap<String, Entry> entries) {
+    }
+
+    private static final class Entry {
+        private final String sanitized;
+        private volatile boolean referenced;
+
+        private Entry(String sanitized) {
+            this.sanitized = sanitized;
+        }
+    }
+}
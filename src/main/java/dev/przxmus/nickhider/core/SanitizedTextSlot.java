@@ -0,0 +1,36 @@
+package dev.przxmus.nickhider.core;
+
+import net.minecraft.network.chat.FormattedText;
+
+/**
+ * Per-instance cache of cross-segment sanitization, mixed into {@code MutableComponent}. The cached value is only
+ * valid for the {@link TextSanitizer#stamp} and language generation it was computed under; translatable contents
+ * render differently once another language is loaded.
+ *
+ * <p>The component also caches its visual order per language, which would freeze the first sanitized result, so the
+ * slot remembers the stamp that visual order was built under.
+ */
+public interface SanitizedTextSlot {
+    Cached nickhider$sanitized();
+
+    void nickhider$setSanitized(Cached cached);
+
+    long nickhider$visualOrderStamp();
+
+    void nickhider$setVisualOrderStamp(long stamp);
+
+    /**
+     * Records {@code stamp} as the one the visual order is built under, returning {@code true} when it differs from
+     * the previous one and a cached visual order must be rebuilt.
+     */
+    static boolean visualOrderStale(SanitizedTextSlot slot, long stamp) {
+        if (slot.nickhider$visualOrderStamp() == stamp) {
+            return false;
+        }
+        slot.nickhider$setVisualOrderStamp(stamp);
+        return true;
+    }
+
+    record Cached(long stamp, long languageGeneration, FormattedText text) {
+    }
+}
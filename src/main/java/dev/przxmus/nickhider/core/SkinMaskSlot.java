@@ -0,0 +1,35 @@
+package dev.przxmus.nickhider.core;
+
+/**
+ * Per-instance cache of the skin and cape overrides for one player, mixed into {@code PlayerInfo} so the skin hooks
+ * read fields instead of resolving through {@link SkinResolutionService} on every call.
+ */
+public interface SkinMaskSlot {
+    Cached nickhider$skinMask();
+
+    void nickhider$setSkinMask(Cached cached);
+
+    /**
+     * Overrides resolved under one policy version, skin generation, roster epoch and refresh bucket. {@code skin} is
+     * {@code null} when the skin is not replaced; with {@code overrideCape} set, a {@code null} {@code cape} hides the
+     * cape and elytra.
+     */
+    record Cached(
+            long policyVersion,
+            long skinGeneration,
+            long rosterEpoch,
+            long refreshBucket,
+            ResolvedSkin skin,
+            boolean overrideCape,
+            ResolvedSkin cape
+    ) {
+        public static final Cached NONE = new Cached(-1L, -1L, -1L, -1L, null, false, null);
+
+        boolean isCurrent(long policyVersion, long skinGeneration, long rosterEpoch, long refreshBucket) {
+            return this.policyVersion == policyVersion
+                    && this.skinGeneration == skinGeneration
+                    && this.rosterEpoch == rosterEpoch
+                    && this.refreshBucket == refreshBucket;
+        }
+    }
+}
@@ -35,6 +35,7 @@ import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.resources.DefaultPlayerSkin;
 import net.minecraft.client.resources.SkinManager;
@@ -87,6 +88,7 @@ public final class SkinResolutionService {
 
     private final Map<String, SourceState> sourceStates = new ConcurrentHashMap<>();
     private final Map<String, LookupCacheEntry> lookupCache = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
 
     public SkinResolutionService(Path cacheDirectory) {
         this(
@@ -159,6 +161,15 @@ public final class SkinResolutionService {
     public void clearRuntimeCache() {
         sourceStates.clear();
         lookupCache.clear();
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Changes whenever a source gets a new last-known-good skin or the runtime cache is cleared, so callers can keep
+     * resolved skins until it moves.
+     */
+    public long generation() {
+        return generation.get();
     }
 
     public void forceRefreshSources(PrivacyConfig config) {
@@ -307,6 +318,7 @@ public final class SkinResolutionService {
             state.lastSuccessViaExternal = viaExternalFallback;
             state.lifecycle = FetchLifecycle.SUCCESS;
         }
+        generation.incrementAndGet();
 
         if (viaExternalFallback) {
             NickHider.LOGGER.info(
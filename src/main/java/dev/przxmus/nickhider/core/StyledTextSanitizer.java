@@ -0,0 +1,63 @@
+package dev.przxmus.nickhider.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.FormattedText;
+import net.minecraft.network.chat.MutableComponent;
+import net.minecraft.network.chat.Style;
+
+/**
+ * Sanitizes a styled text tree as one string so names split across siblings are matched, then rebuilds it as flat
+ * literal siblings that keep each segment's resolved {@link Style}.
+ */
+final class StyledTextSanitizer {
+    private StyledTextSanitizer() {}
+
+    /**
+     * Returns {@code text} itself when it has fewer than two segments, which the per-segment hook already covers, or
+     * when nothing changed.
+     */
+    static FormattedText sanitize(FormattedText text, UnaryOperator<String[]> segmentSanitizer) {
+        return rewrite(text, 2, segmentSanitizer);
+    }
+
+    /**
+     * Like {@link #sanitize(FormattedText, UnaryOperator)} but also rewrites single-segment components, for callers
+     * that render the component directly instead of through the per-segment hook.
+     */
+    static Component sanitizeComponent(Component text, UnaryOperator<String[]> segmentSanitizer) {
+        return (Component) rewrite(text, 1, segmentSanitizer);
+    }
+
+    private static FormattedText rewrite(FormattedText text, int minSegments, UnaryOperator<String[]> segmentSanitizer) {
+        List<String> strings = new ArrayList<>();
+        List<Style> styles = new ArrayList<>();
+        text.visit((style, string) -> {
+            if (!string.isEmpty()) {
+                strings.add(string);
+                styles.add(style);
+            }
+            return Optional.empty();
+        }, Style.EMPTY);
+        if (strings.isEmpty() || strings.size() < minSegments) {
+            return text;
+        }
+
+        String[] segments = strings.toArray(String[]::new);
+        String[] sanitized = segmentSanitizer.apply(segments);
+        if (sanitized == segments) {
+            return text;
+        }
+
+        MutableComponent rebuilt = Component.empty();
+        for (int i = 0; i < sanitized.length; i++) {
+            if (!sanitized[i].isEmpty()) {
+                rebuilt.append(Component.literal(sanitized[i]).setStyle(styles.get(i)));
+            }
+        }
+        return rebuilt;
+    }
+}
@@ -0,0 +1,30 @@
+package dev.przxmus.nickhider.core;
+
+import java.util.Locale;
+
+public record TextCacheStats(long hits, long misses, int size, long prefilterChecked, long prefilterRejected) {
+    public double hitRate() {
+        long total = hits + misses;
+        return total == 0L ? 0.0D : (double) hits / total;
+    }
+
+    /**
+     * Share of cache misses the prefilter rejected without running the matcher.
+     */
+    public double prefilterRejectRate() {
+        return prefilterChecked == 0L ? 0.0D : (double) prefilterRejected / prefilterChecked;
+    }
+
+    public String summary() {
+        return String.format(
+                Locale.ROOT,
+                "hits=%d, misses=%d, hitRate=%.1f%%, size=%d, prefilterRejected=%d, prefilterRejectRate=%.1f%%",
+                hits,
+                misses,
+                hitRate() * 100.0D,
+                size,
+                prefilterRejected,
+                prefilterRejectRate() * 100.0D
+        );
+    }
+}
@@ -0,0 +1,66 @@
+package dev.przxmus.nickhider.core;
+
+import java.util.Arrays;
+
+/**
+ * Ordered, non-overlapping replacements of {@code [start, end)} ranges in one source string. Matchers record edits
+ * instead of building output directly, so callers can either apply them to the whole text or map them back onto the
+ * segments the text was joined from.
+ */
+final class TextEdits {
+    private int[] starts = new int[0];
+    private int[] ends = new int[0];
+    private String[] replacements = new String[0];
+    private int size;
+
+    void add(int start, int end, String replacement) {
+        if (size == starts.length) {
+            int capacity = Math.max(4, size * 2);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            replacements = Arrays.copyOf(replacements, capacity);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        replacements[size] = replacement;
+        size++;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int start(int index) {
+        return starts[index];
+    }
+
+    int end(int index) {
+        return ends[index];
+    }
+
+    String replacement(int index) {
+        return replacements[index];
+    }
+
+    /**
+     * Applies the edits to {@code text}, returning the same instance when there are none.
+     */
+    String applyTo(String text) {
+        if (size == 0) {
+            return text;
+        }
+
+        StringBuilder out = new StringBuilder(text.length() + 16);
+        int copyFrom = 0;
+        for (int i = 0; i < size; i++) {
+            out.append(text, copyFrom, starts[i]).append(replacements[i]);
+            copyFrom = ends[i];
+        }
+        out.append(text, copyFrom, text.length());
+        return out.toString();
+    }
+}
@@ -0,0 +1,138 @@
+package dev.przxmus.nickhider.core;
+
+import java.util.Arrays;
+
+/**
+ * Conservative check that rejects text which cannot contain any masked name or UUID token, so the automaton never
+ * runs on it. False positives are fine; false negatives would leak identities.
+ *
+ * <p>Names are summarized as a minimum length plus a bitset over adjacent character pairs (low bytes only, so other
+ * characters fold together), taken across &sect; formatting codes the way the matcher skips them. UUID tokens need
+ * a run of eight hex digits or an NBT {@code [I; } prefix.
+ */
+final class TextPrefilter {
+    static final TextPrefilter NONE = new TextPrefilter(new long[0], Integer.MAX_VALUE, false, false);
+
+    private static final int BIGRAM_WORDS = 1 << 10;
+    private static final int UUID_MIN_LENGTH = 8;
+    private static final char FORMAT_PREFIX = '\u00a7';
+
+    private final long[] bigrams;
+    private final int minNameLength;
+    private final boolean anyNameText;
+    private final boolean uuids;
+
+    private TextPrefilter(long[] bigrams, int minNameLength, boolean anyNameText, boolean uuids) {
+        this.bigrams = bigrams;
+        this.minNameLength = minNameLength;
+        this.anyNameText = anyNameText;
+        this.uuids = uuids;
+    }
+
+    static TextPrefilter ofNames(Iterable<String> names) {
+        return NONE.withNames(names);
+    }
+
+    /**
+     * Returns a copy that also admits {@code names}.
+     */
+    TextPrefilter withNames(Iterable<String> names) {
+        long[] nextBigrams = bigrams.length == 0 ? new long[BIGRAM_WORDS] : Arrays.copyOf(bigrams, BIGRAM_WORDS);
+        int nextMin = minNameLength;
+        boolean nextAny = anyNameText;
+        boolean added = false;
+        for (String name : names) {
+            if (name == null || name.isEmpty()) {
+                continue;
+            }
+            added = true;
+            nextMin = Math.min(nextMin, name.length());
+            if (name.length() == 1) {
+                // A one-character pattern has no pair to index; admit every long enough text instead.
+                nextAny = true;
+                continue;
+            }
+            for (int i = 1; i < name.length(); i++) {
+                int bigram = bigram(name.charAt(i - 1), name.charAt(i));
+                nextBigrams[bigram >>> 6] |= 1L << bigram;
+            }
+        }
+        return added ? new TextPrefilter(nextBigrams, nextMin, nextAny, uuids) : this;
+    }
+
+    TextPrefilter withUuids(boolean enabled) {
+        return enabled == uuids ? this : new TextPrefilter(bigrams, minNameLength, anyNameText, enabled);
+    }
+
+    TextPrefilter union(TextPrefilter other) {
+        if (other.bigrams.length == 0) {
+            return other.uuids ? withUuids(true) : this;
+        }
+        if (bigrams.length == 0) {
+            return uuids ? other.withUuids(true) : other;
+        }
+
+        long[] merged = Arrays.copyOf(bigrams, BIGRAM_WORDS);
+        for (int i = 0; i < BIGRAM_WORDS; i++) {
+            merged[i] |= other.bigrams[i];
+        }
+        return new TextPrefilter(
+                merged,
+                Math.min(minNameLength, other.minNameLength),
+                anyNameText || other.anyNameText,
+                uuids || other.uuids
+        );
+    }
+
+    /**
+     * Returns {@code false} only when {@code text} certainly contains no pattern.
+     */
+    boolean mayMatch(String text) {
+        int length = text.length();
+        if (length == 0) {
+            return false;
+        }
+        boolean nameCandidate = length >= minNameLength;
+        if (nameCandidate && anyNameText) {
+            return true;
+        }
+        boolean uuidCandidate = uuids && length >= UUID_MIN_LENGTH;
+        if (!nameCandidate && !uuidCandidate) {
+            return false;
+        }
+
+        int hexRun = 0;
+        int previous = -1;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == FORMAT_PREFIX) {
+                // Formatting codes are transparent to name matching, so pairs are taken across them.
+                hexRun = 0;
+                i++;
+                continue;
+            }
+            if (nameCandidate && previous >= 0) {
+                int bigram = bigram((char) previous, c);
+                if ((bigrams[bigram >>> 6] & (1L << bigram)) != 0L) {
+                    return true;
+                }
+            }
+            if (uuidCandidate) {
+                hexRun = isHex(c) ? hexRun + 1 : 0;
+                if (hexRun >= UUID_MIN_LENGTH || (previous == '[' && c == 'I')) {
+                    return true;
+                }
+            }
+            previous = c;
+        }
+        return false;
+    }
+
+    private static int bigram(char first, char second) {
+        return ((first & 0xFF) << 8) | (second & 0xFF);
+    }
+
+    private static boolean isHex(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+}
@@ -1,195 +1,299 @@
 package dev.przxmus.nickhider.core;
 
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Locale;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.UUID;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import net.minecraft.client.Minecraft;
-import net.minecraft.client.User;
-import net.minecraft.client.multiplayer.PlayerInfo;
-import net.minecraft.client.player.LocalPlayer;
-import dev.przxmus.nickhider.config.PrivacyConfig;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 public final class TextSanitizer {
-    private static final Pattern STANDALONE_UUID_PREFIX_PATTERN = Pattern.compile("(?i)\\b[0-9a-f]{8}\\b(?!-)");
+    private static final int CACHE_MAX_ENTRIES = 4096;
+    private static final int CACHE_MAX_TEXT_LENGTH = 512;
 
     private final PlayerAliasService aliasService;
     private final IdentityMaskingService identityMaskingService;
+    private final KnownPlayerDirectory knownPlayers;
+
+    private final SanitizedTextCache cache = new SanitizedTextCache(CACHE_MAX_ENTRIES, CACHE_MAX_TEXT_LENGTH);
+    private final LanguageTextIndex languageText = new LanguageTextIndex();
+    private final RosterPatternIndex rosterPatterns;
+    private final AtomicLong compileStamp = new AtomicLong();
+    private final LongAdder prefilterChecked = new LongAdder();
+    private final LongAdder prefilterRejected = new LongAdder();
+    private volatile CompiledRoster compiled = CompiledRoster.EMPTY;
 
     public TextSanitizer(PlayerAliasService aliasService, IdentityMaskingService identityMaskingService) {
+        this(aliasService, identityMaskingService, null);
+    }
+
+    public TextSanitizer(PlayerAliasService aliasService, IdentityMaskingService identityMaskingService, KnownPlayerDirectory knownPlayers) {
+        this(aliasService, identityMaskingService, knownPlayers, new RosterPatternIndex());
+    }
+
+    TextSanitizer(
+            PlayerAliasService aliasService,
+            IdentityMaskingService identityMaskingService,
+            KnownPlayerDirectory knownPlayers,
+            RosterPatternIndex rosterPatterns
+    ) {
         this.aliasService = aliasService;
         this.identityMaskingService = identityMaskingService;
+        this.knownPlayers = knownPlayers;
+        this.rosterPatterns = rosterPatterns;
     }
 
-    public String sanitize(String text, PrivacyConfig config) {
-        if (text == null || text.isEmpty()) {
+    /**
+     * Masks roster identities, and known offline players when other names are hidden, in {@code text}. Roster
+     * patterns are updated incrementally per roster epoch; cached results are reused until the patterns or the
+     * dictionary generation change, so policy changes must be published as a new roster epoch.
+     */
+    public String sanitize(String text, MaskingPolicy policy, RosterSnapshot roster) {
+        if (text == null || text.isEmpty() || roster == null || roster.isEmpty() || languageText.contains(text)) {
             return text;
         }
 
-        Minecraft minecraft = Minecraft.getInstance();
-        LocalPlayer localPlayer = minecraft.player;
-        if (localPlayer == null) {
-            return text;
+        CompiledRoster compiledRoster = compiledFor(roster, policy);
+        String cached = cache.get(text, compiledRoster.stamp());
+        if (cached != null) {
+            return cached;
         }
 
-        Map<UUID, String> names = new LinkedHashMap<>();
-        String localName = ProfileCompat.name(localPlayer.getGameProfile());
-        if (localName != null) {
-            names.put(localPlayer.getUUID(), localName);
+        prefilterChecked.increment();
+        if (!compiledRoster.prefilter().mayMatch(text)) {
+            // Not cached: rejection is cheaper than an LRU slot, and keeps the cache for text that needed matching.
+            prefilterRejected.increment();
+            return text;
         }
 
-        if (minecraft.getConnection() != null) {
-            for (PlayerInfo info : minecraft.getConnection().getOnlinePlayers()) {
-                UUID profileId = ProfileCompat.id(info.getProfile());
-                String profileName = ProfileCompat.name(info.getProfile());
-                if (profileId == null || profileName == null) {
-                    continue;
-                }
-                names.put(profileId, profileName);
-            }
+        String sanitized = compiledRoster.uuids().apply(text, compiledRoster.nameLayers());
+        cache.put(text, sanitized, compiledRoster.stamp());
+        return sanitized;
+    }
+
+    /**
+     * Sanitizes text that is rendered as consecutive segments, so identities split across segment boundaries are
+     * still matched. A replacement goes to the segment its match starts in and the rest of the match is dropped from
+     * the following segments. Returns {@code segments} itself when nothing changed.
+     */
+    public String[] sanitizeSegments(String[] segments, MaskingPolicy policy, RosterSnapshot roster) {
+        if (segments.length == 0 || roster == null || roster.isEmpty()) {
+            return segments;
         }
 
-        UUID localIdentityUuid = resolveLocalIdentityUuid(minecraft, localPlayer, names);
-        Map<String, String> replacements = new LinkedHashMap<>(aliasService.buildReplacementMap(localIdentityUuid, names, config));
-        Map<UUID, UUID> uuidMasks = appendUuidReplacements(replacements, names, localIdentityUuid, config);
+        int[] bounds = new int[segments.length + 1];
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < segments.length; i++) {
+            joined.append(segments[i]);
+            bounds[i + 1] = joined.length();
+        }
+        String text = joined.toString();
 
-        List<Map.Entry<String, String>> ordered = replacements.entrySet().stream()
-                .sorted(Comparator.comparingInt((Map.Entry<String, String> e) -> e.getKey().length()).reversed())
-                .toList();
+        CompiledRoster compiledRoster = compiledFor(roster, policy);
+        if (text.isEmpty() || !compiledRoster.prefilter().mayMatch(text)) {
+            return segments;
+        }
+        TextEdits edits = new TextEdits();
+        compiledRoster.uuids().collect(text, compiledRoster.nameLayers(), edits);
+        if (edits.isEmpty()) {
+            return segments;
+        }
 
-        String sanitized = text;
-        for (Map.Entry<String, String> entry : ordered) {
-            sanitized = sanitized.replace(entry.getKey(), entry.getValue());
+        StringBuilder[] out = new StringBuilder[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            out[i] = new StringBuilder(segments[i].length());
+        }
+        int copyFrom = 0;
+        for (int edit = 0; edit < edits.size(); edit++) {
+            copySpan(text, copyFrom, edits.start(edit), bounds, out);
+            out[segmentAt(bounds, edits.start(edit))].append(edits.replacement(edit));
+            copyFrom = edits.end(edit);
         }
+        copySpan(text, copyFrom, text.length(), bounds, out);
 
-        sanitized = replaceStandaloneUuidPrefixes(sanitized, uuidMasks);
+        String[] sanitized = new String[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            String segment = out[i].toString();
+            sanitized[i] = segment.equals(segments[i]) ? segments[i] : segment;
+        }
         return sanitized;
     }
 
-    private Map<UUID, UUID> appendUuidReplacements(
-            Map<String, String> replacements,
-            Map<UUID, String> namesByUuid,
-            UUID localIdentityUuid,
-            PrivacyConfig config
-    ) {
-        Map<UUID, UUID> uuidMasks = new LinkedHashMap<>();
-        for (Map.Entry<UUID, String> entry : namesByUuid.entrySet()) {
-            UUID originalUuid = entry.getKey();
-            String originalName = entry.getValue();
-            if (originalUuid == null || originalName == null || originalName.isBlank()) {
-                continue;
-            }
+    /**
+     * Identifies the compiled patterns for {@code policy} and {@code roster}; results sanitized under one stamp stay
+     * valid until it changes.
+     */
+    public long stamp(MaskingPolicy policy, RosterSnapshot roster) {
+        return compiledFor(roster, policy).stamp();
+    }
 
-            boolean localTarget = originalUuid.equals(localIdentityUuid);
-            MaskedProfile maskedProfile = identityMaskingService.maskForName(config, localTarget, originalUuid, originalName);
-            UUID maskedUuid = maskedProfile.uuid();
-            if (maskedUuid == null || maskedUuid.equals(originalUuid)) {
-                continue;
-            }
+    /**
+     * Replaces the set of language file values that {@link #sanitize} passes through untouched.
+     */
+    public int indexLanguageText(Map<String, String> storage) {
+        languageText.replace(storage);
+        return languageText.size();
+    }
 
-            uuidMasks.put(originalUuid, maskedUuid);
-            addUuidForms(replacements, originalUuid, maskedUuid);
+    /**
+     * Remembers roster names in the known player dictionary, only while the policy masks known players.
+     */
+    public void observeRoster(RosterSnapshot roster, MaskingPolicy policy) {
+        if (knownPlayers != null && policy.maskKnownPlayers() && roster != null && !roster.isEmpty()) {
+            knownPlayers.record(roster.namesByUuid());
         }
-
-        return uuidMasks;
     }
 
-    private static void addUuidForms(Map<String, String> replacements, UUID original, UUID masked) {
-        String originalDashed = original.toString();
-        String maskedDashed = masked.toString();
-        String originalCompact = originalDashed.replace("-", "");
-        String maskedCompact = maskedDashed.replace("-", "");
-
-        putReplacement(replacements, originalDashed, maskedDashed);
-        putReplacement(replacements, originalDashed.toUpperCase(), maskedDashed.toUpperCase());
-        putReplacement(replacements, originalCompact, maskedCompact);
-        putReplacement(replacements, originalCompact.toUpperCase(), maskedCompact.toUpperCase());
+    public void flushKnownPlayers() {
+        if (knownPlayers != null) {
+            knownPlayers.flush();
+        }
+    }
 
-        String originalIntArray = uuidToNbtIntArrayString(original);
-        String maskedIntArray = uuidToNbtIntArrayString(masked);
-        putReplacement(replacements, originalIntArray, maskedIntArray);
+    public TextCacheStats cacheStats() {
+        return new TextCacheStats(cache.hits(), cache.misses(), cache.size(), prefilterChecked.sum(), prefilterRejected.sum());
     }
 
-    private static String replaceStandaloneUuidPrefixes(String text, Map<UUID, UUID> uuidMasks) {
-        if (text == null || text.isEmpty() || uuidMasks.isEmpty()) {
-            return text;
+    private static void copySpan(String text, int from, int to, int[] bounds, StringBuilder[] out) {
+        int pos = from;
+        while (pos < to) {
+            int segment = segmentAt(bounds, pos);
+            int end = Math.min(to, bounds[segment + 1]);
+            out[segment].append(text, pos, end);
+            pos = end;
         }
+    }
 
-        Map<String, String> lowerPrefixMap = new HashMap<>();
-        for (Map.Entry<UUID, UUID> entry : uuidMasks.entrySet()) {
-            String originalPrefix = entry.getKey().toString().substring(0, 8);
-            String maskedPrefix = entry.getValue().toString().substring(0, 8);
-            if (!originalPrefix.equals(maskedPrefix)) {
-                lowerPrefixMap.put(originalPrefix, maskedPrefix);
+    /**
+     * Index of the non-empty segment containing {@code offset}.
+     */
+    private static int segmentAt(int[] bounds, int offset) {
+        int low = 0;
+        int high = bounds.length - 2;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (bounds[mid] <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
             }
         }
+        return low;
+    }
 
-        if (lowerPrefixMap.isEmpty()) {
-            return text;
+    private CompiledRoster compiledFor(RosterSnapshot roster, MaskingPolicy policy) {
+        long aliasGeneration = aliasService.namespaceGeneration();
+        NameDictionary dictionary = knownPlayers != null && policy.maskKnownPlayers()
+                ? knownPlayers.dictionary()
+                : NameDictionary.EMPTY;
+        CompiledRoster current = compiled;
+        // Hot path for every sanitized string: identity checks only, no masking inputs or entry factory allocated.
+        // The published patterns are compared too, so a base rebuilt in the background is picked up right away.
+        if (current.roster() == roster
+                && current.policy() == policy
+                && current.aliasGeneration() == aliasGeneration
+                && current.dictionary() == dictionary
+                && current.patterns() == rosterPatterns.current()) {
+            return current;
         }
+        return compile(roster, policy, aliasGeneration, dictionary, current);
+    }
 
-        Matcher matcher = STANDALONE_UUID_PREFIX_PATTERN.matcher(text);
-        StringBuffer out = new StringBuffer(text.length());
-        while (matcher.find()) {
-            String token = matcher.group();
-            String replacement = lowerPrefixMap.get(token.toLowerCase(Locale.ROOT));
-            if (replacement == null) {
-                matcher.appendReplacement(out, Matcher.quoteReplacement(token));
-                continue;
-            }
+    private CompiledRoster compile(
+            RosterSnapshot roster,
+            MaskingPolicy policy,
+            long aliasGeneration,
+            NameDictionary dictionary,
+            CompiledRoster current
+    ) {
+        UUID localIdentityUuid = roster.localIdentityUuid();
+        RosterPatternIndex.Patterns patterns = rosterPatterns.sync(
+                roster,
+                new RosterPatternIndex.MaskingInputs(policy, aliasGeneration, localIdentityUuid),
+                (uuid, name) -> rosterEntry(policy, localIdentityUuid, uuid, name)
+        );
 
-            boolean allUpper = token.equals(token.toUpperCase(Locale.ROOT));
-            String normalizedReplacement = allUpper ? replacement.toUpperCase(Locale.ROOT) : replacement;
-            matcher.appendReplacement(out, Matcher.quoteReplacement(normalizedReplacement));
+        ReplacementMatcher.Layer[] layers;
+        if (current.patterns() == patterns && current.dictionary() == dictionary) {
+            layers = current.nameLayers();
+        } else {
+            layers = patterns.nameLayers();
+            if (!dictionary.isEmpty()) {
+                ReplacementMatcher.Layer[] known = dictionary.layers((uuid, name) -> maskedKnownName(uuid, name, localIdentityUuid, policy));
+                layers = Arrays.copyOf(layers, layers.length + known.length);
+                System.arraycopy(known, 0, layers, layers.length - known.length, known.length);
+            }
         }
-        matcher.appendTail(out);
-        return out.toString();
-    }
 
-    private static String uuidToNbtIntArrayString(UUID uuid) {
-        long most = uuid.getMostSignificantBits();
-        long least = uuid.getLeastSignificantBits();
-        int a = (int) (most >> 32);
-        int b = (int) most;
-        int c = (int) (least >> 32);
-        int d = (int) least;
-        return "[I; " + a + ", " + b + ", " + c + ", " + d + "]";
+        // Folding the dictionary overlay keeps its generation: the same names are masked, so cached results stay valid.
+        boolean sameMasks = current.patterns() == patterns && current.dictionary().generation() == dictionary.generation();
+        CompiledRoster rebuilt = new CompiledRoster(
+                roster,
+                policy,
+                aliasGeneration,
+                patterns,
+                dictionary,
+                sameMasks ? current.stamp() : compileStamp.incrementAndGet(),
+                layers,
+                dictionary.isEmpty() ? patterns.prefilter() : patterns.prefilter().union(dictionary.prefilter())
+        );
+        compiled = rebuilt;
+        return rebuilt;
     }
 
-    private static void putReplacement(Map<String, String> replacements, String original, String masked) {
-        if (original == null || masked == null || original.isBlank() || original.equals(masked)) {
-            return;
+    /**
+     * Masks one roster player, mirroring {@link PlayerAliasService#buildReplacementMap} for the name.
+     */
+    private RosterPatternIndex.Entry rosterEntry(MaskingPolicy policy, UUID localIdentityUuid, UUID uuid, String name) {
+        boolean localTarget = uuid.equals(localIdentityUuid);
+        MaskedProfile maskedProfile = identityMaskingService.maskForName(policy, localTarget, uuid, name);
+        String replacement = null;
+        if (policy.enabled() && policy.target(localTarget).hideName() && !name.equals(maskedProfile.name())) {
+            replacement = maskedProfile.name();
         }
-        replacements.put(original, masked);
+        UUID maskedUuid = maskedProfile.uuid();
+        return new RosterPatternIndex.Entry(name, replacement, maskedUuid == null || maskedUuid.equals(uuid) ? null : maskedUuid);
     }
 
-    private static UUID resolveLocalIdentityUuid(Minecraft minecraft, LocalPlayer localPlayer, Map<UUID, String> names) {
-        User user = minecraft.getUser();
-        if (user != null) {
-            UUID accountUuid = user.getProfileId();
-            if (accountUuid != null && names.containsKey(accountUuid)) {
-                return accountUuid;
-            }
+    /**
+     * Masks a known offline player only if they already have an alias in the active namespace, so the dictionary
+     * never reaches names from other servers and common words are only masked where such a player was actually met.
+     */
+    private String maskedKnownName(UUID uuid, String name, UUID localIdentityUuid, MaskingPolicy policy) {
+        boolean localTarget = uuid.equals(localIdentityUuid);
+        if (!localTarget && !aliasService.hasAlias(uuid)) {
+            return null;
+        }
+        MaskedProfile masked = identityMaskingService.maskForName(policy, localTarget, uuid, name);
+        return name.equals(masked.name()) ? null : masked.name();
+    }
 
-            String accountName = user.getName();
-            if (accountName != null && !accountName.isBlank()) {
-                for (Map.Entry<UUID, String> entry : names.entrySet()) {
-                    if (accountName.equalsIgnoreCase(entry.getValue())) {
-                        return entry.getKey();
-                    }
-                }
-            }
+    /**
+     * Compiled patterns plus the inputs they were last requested with; {@code roster} and {@code policy} are compared
+     * by identity.
+     */
+    private record CompiledRoster(
+            RosterSnapshot roster,
+            MaskingPolicy policy,
+            long aliasGeneration,
+            RosterPatternIndex.Patterns patterns,
+            NameDictionary dictionary,
+            long stamp,
+            ReplacementMatcher.Layer[] nameLayers,
+            TextPrefilter prefilter
+    ) {
+        private static final CompiledRoster EMPTY = new CompiledRoster(
+                null,
+                null,
+                -1L,
+                RosterPatternIndex.Patterns.EMPTY,
+                NameDictionary.EMPTY,
+                0L,
+                new ReplacementMatcher.Layer[0],
+                TextPrefilter.NONE
+        );
 
-            if (accountUuid != null) {
-                return accountUuid;
-            }
+        private UuidTokenRewriter uuids() {
+            return patterns.uuids();
         }
-
-        return localPlayer.getUUID();
     }
 }
@@ -0,0 +1,394 @@
+package dev.przxmus.nickhider.core;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Single-pass scanner that masks roster UUIDs written as dashed or compact hex, as an NBT {@code [I; a, b, c, d]}
+ * int array, or as a standalone 8-digit hex prefix.
+ *
+ * <p>Candidate tokens are parsed into longs and looked up in open-addressing tables, so the cost is independent of
+ * roster size. Hex output is upper-cased when the matched token has no lowercase letters. Text between tokens is
+ * handed to the name matcher, which therefore never sees or rewrites UUID tokens.
+ */
+final class UuidTokenRewriter {
+    private static final UuidTokenRewriter EMPTY = new UuidTokenRewriter(Map.of(), null);
+    private static final String REMOVED_PREFIX = "";
+    private static final String INT_ARRAY_OPEN = "[I; ";
+    private static final int DASHED_LENGTH = 36;
+    private static final int COMPACT_LENGTH = 32;
+    private static final int PREFIX_LENGTH = 8;
+
+    private final long[] keyMsb;
+    private final long[] keyLsb;
+    private final UUID[] masked;
+    private final int[] prefixKeys;
+    private final String[] prefixValues;
+    private final int size;
+    private final UuidTokenRewriter base;
+
+    /**
+     * With a {@code base}, entries shadow it: a {@code null} mask is stored as a removal (the original itself), and
+     * every entry claims its prefix so stale base prefixes never leak through.
+     */
+    private UuidTokenRewriter(Map<UUID, UUID> masksByOriginal, UuidTokenRewriter base) {
+        this.base = base;
+        int capacity = tableCapacity(masksByOriginal.size());
+        this.keyMsb = new long[capacity];
+        this.keyLsb = new long[capacity];
+        this.masked = new UUID[capacity];
+        this.prefixKeys = new int[capacity];
+        this.prefixValues = new String[capacity];
+
+        int count = 0;
+        for (Map.Entry<UUID, UUID> entry : masksByOriginal.entrySet()) {
+            UUID original = entry.getKey();
+            UUID mask = entry.getValue();
+            if (original == null || (base == null && (mask == null || original.equals(mask)))) {
+                continue;
+            }
+            if (mask == null) {
+                mask = original;
+            }
+
+            int slot = slotFor(original.getMostSignificantBits(), original.getLeastSignificantBits());
+            keyMsb[slot] = original.getMostSignificantBits();
+            keyLsb[slot] = original.getLeastSignificantBits();
+            masked[slot] = mask;
+            count++;
+
+            int originalPrefix = (int) (original.getMostSignificantBits() >>> 32);
+            int maskedPrefix = (int) (mask.getMostSignificantBits() >>> 32);
+            if (originalPrefix != maskedPrefix || base != null) {
+                int prefixSlot = prefixSlotFor(originalPrefix);
+                prefixKeys[prefixSlot] = originalPrefix;
+                prefixValues[prefixSlot] = originalPrefix != maskedPrefix ? mask.toString().substring(0, PREFIX_LENGTH) : REMOVED_PREFIX;
+            }
+        }
+        this.size = count;
+    }
+
+    static UuidTokenRewriter compile(Map<UUID, UUID> masksByOriginal) {
+        if (masksByOriginal == null || masksByOriginal.isEmpty()) {
+            return EMPTY;
+        }
+        return new UuidTokenRewriter(masksByOriginal, null);
+    }
+
+    /**
+     * Returns a rewriter that applies {@code changes} on top of this one without rebuilding it; a {@code null} value
+     * removes the mask for that original. Cost is proportional to the number of changes.
+     */
+    UuidTokenRewriter withChanges(Map<UUID, UUID> changes) {
+        if (changes.isEmpty()) {
+            return this;
+        }
+        return new UuidTokenRewriter(changes, this);
+    }
+
+    boolean isEmpty() {
+        return size == 0 && (base == null || base.isEmpty());
+    }
+
+    /**
+     * Rewrites UUID tokens in {@code text} and applies the {@code names} layers to the text between them. Returns the
+     * input instance when nothing changed.
+     */
+    String apply(String text, ReplacementMatcher.Layer[] names) {
+        if (text == null || text.isEmpty()) {
+            return text;
+        }
+        TextEdits edits = new TextEdits();
+        collect(text, names, edits);
+        return edits.applyTo(text);
+    }
+
+    /**
+     * Records the edits {@link #apply} would make, in text order.
+     */
+    void collect(String text, ReplacementMatcher.Layer[] names, TextEdits edits) {
+        if (isEmpty()) {
+            ReplacementMatcher.collect(text, 0, text.length(), names, edits);
+            return;
+        }
+
+        int length = text.length();
+        int copyFrom = 0;
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == '[') {
+                int end = intArrayEnd(text, i);
+                UUID mask = end < 0 ? null : lookupIntArray(text, i);
+                if (mask == null) {
+                    i++;
+                    continue;
+                }
+                ReplacementMatcher.collect(text, copyFrom, i, names, edits);
+                edits.add(i, end, formatIntArray(mask));
+                i = end;
+                copyFrom = i;
+                continue;
+            }
+
+            if (hexValue(c) < 0) {
+                i++;
+                continue;
+            }
+
+            int runStart = i;
+            int runEnd = i + 1;
+            while (runEnd < length && hexValue(text.charAt(runEnd)) >= 0) {
+                runEnd++;
+            }
+
+            // Compact form: slide a 128-bit window across the run.
+            int pos = runStart;
+            if (runEnd - runStart >= COMPACT_LENGTH) {
+                long hi = 0L;
+                long lo = 0L;
+                int filled = 0;
+                for (int j = runStart; j < runEnd; j++) {
+                    hi = (hi << 4) | (lo >>> 60);
+                    lo = (lo << 4) | hexValue(text.charAt(j));
+                    if (++filled < COMPACT_LENGTH) {
+                        continue;
+                    }
+                    UUID mask = lookup(hi, lo);
+                    if (mask != null) {
+                        int tokenStart = j - COMPACT_LENGTH + 1;
+                        ReplacementMatcher.collect(text, copyFrom, tokenStart, names, edits);
+                        edits.add(tokenStart, j + 1, withCase(mask.toString().replace("-", ""), text, tokenStart, j + 1));
+                        copyFrom = j + 1;
+                        pos = j + 1;
+                        hi = 0L;
+                        lo = 0L;
+                        filled = 0;
+                    }
+                }
+            }
+
+            // Dashed form: the first group is the last 8 digits of a run followed by '-'.
+            int dashedStart = runEnd - PREFIX_LENGTH;
+            if (dashedStart >= pos && isDashedUuid(text, dashedStart)) {
+                UUID mask = lookup(parseHex(text, dashedStart, dashedStart + 8, dashedStart + 9, dashedStart + 13, dashedStart + 14, dashedStart + 18),
+                        parseHex(text, dashedStart + 19, dashedStart + 23, dashedStart + 24, dashedStart + 36, 0, 0));
+                if (mask != null) {
+                    ReplacementMatcher.collect(text, copyFrom, dashedStart, names, edits);
+                    edits.add(dashedStart, dashedStart + DASHED_LENGTH, withCase(mask.toString(), text, dashedStart, dashedStart + DASHED_LENGTH));
+                    i = dashedStart + DASHED_LENGTH;
+                    copyFrom = i;
+                    continue;
+                }
+            }
+
+            if (pos == runStart && runEnd - runStart == PREFIX_LENGTH && isStandalonePrefix(text, runStart, runEnd)) {
+                String maskedPrefix = lookupPrefix((int) parseHex(text, runStart, runEnd, 0, 0, 0, 0));
+                if (maskedPrefix != null) {
+                    ReplacementMatcher.collect(text, copyFrom, runStart, names, edits);
+                    edits.add(runStart, runEnd, withCase(maskedPrefix, text, runStart, runEnd));
+                    copyFrom = runEnd;
+                }
+            }
+            i = runEnd;
+        }
+
+        ReplacementMatcher.collect(text, copyFrom, length, names, edits);
+    }
+
+    private UUID lookup(long msb, long lsb) {
+        int mask = masked.length - 1;
+        for (int slot = mix(msb, lsb) & mask; masked[slot] != null; slot = (slot + 1) & mask) {
+            if (keyMsb[slot] == msb && keyLsb[slot] == lsb) {
+                UUID value = masked[slot];
+                return value.getMostSignificantBits() == msb && value.getLeastSignificantBits() == lsb ? null : value;
+            }
+        }
+        return base == null ? null : base.lookup(msb, lsb);
+    }
+
+    private String lookupPrefix(int prefix) {
+        int mask = prefixValues.length - 1;
+        for (int slot = mix(prefix) & mask; prefixValues[slot] != null; slot = (slot + 1) & mask) {
+            if (prefixKeys[slot] == prefix) {
+                String value = prefixValues[slot];
+                return value.equals(REMOVED_PREFIX) ? null : value;
+            }
+        }
+        return base == null ? null : base.lookupPrefix(prefix);
+    }
+
+    private int slotFor(long msb, long lsb) {
+        int mask = masked.length - 1;
+        int slot = mix(msb, lsb) & mask;
+        while (masked[slot] != null && (keyMsb[slot] != msb || keyLsb[slot] != lsb)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int prefixSlotFor(int prefix) {
+        int mask = prefixValues.length - 1;
+        int slot = mix(prefix) & mask;
+        while (prefixValues[slot] != null && prefixKeys[slot] != prefix) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private UUID lookupIntArray(String text, int start) {
+        int[] values = new int[4];
+        int pos = start + INT_ARRAY_OPEN.length();
+        for (int part = 0; part < 4; part++) {
+            int end = pos;
+            while (text.charAt(end) != ',' && text.charAt(end) != ']') {
+                end++;
+            }
+            values[part] = Integer.parseInt(text, pos, end, 10);
+            pos = end + 2;
+        }
+        long msb = ((long) values[0] << 32) | (values[1] & 0xFFFFFFFFL);
+        long lsb = ((long) values[2] << 32) | (values[3] & 0xFFFFFFFFL);
+        return lookup(msb, lsb);
+    }
+
+    /**
+     * End index of a well-formed {@code [I; a, b, c, d]} token starting at {@code start}, or -1.
+     */
+    private static int intArrayEnd(String text, int start) {
+        if (!text.startsWith(INT_ARRAY_OPEN, start)) {
+            return -1;
+        }
+
+        int pos = start + INT_ARRAY_OPEN.length();
+        int length = text.length();
+        for (int part = 0; part < 4; part++) {
+            int digitsStart = pos < length && text.charAt(pos) == '-' ? pos + 1 : pos;
+            int end = digitsStart;
+            while (end < length && end - digitsStart <= 10 && text.charAt(end) >= '0' && text.charAt(end) <= '9') {
+                end++;
+            }
+            if (end == digitsStart || end - digitsStart > 10 || !fitsInt(text, pos, end)) {
+                return -1;
+            }
+            if (part < 3) {
+                if (!text.startsWith(", ", end)) {
+                    return -1;
+                }
+                pos = end + 2;
+            } else {
+                return end < length && text.charAt(end) == ']' ? end + 1 : -1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean fitsInt(String text, int start, int end) {
+        try {
+            Integer.parseInt(text, start, end, 10);
+            return true;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    private static String formatIntArray(UUID uuid) {
+        long most = uuid.getMostSignificantBits();
+        long least = uuid.getLeastSignificantBits();
+        return INT_ARRAY_OPEN + (int) (most >> 32) + ", " + (int) most + ", " + (int) (least >> 32) + ", " + (int) least + "]";
+    }
+
+    private static boolean isDashedUuid(String text, int start) {
+        if (start + DASHED_LENGTH > text.length()) {
+            return false;
+        }
+        for (int offset = 8; offset < DASHED_LENGTH; offset++) {
+            char c = text.charAt(start + offset);
+            boolean dash = offset == 8 || offset == 13 || offset == 18 || offset == 23;
+            if (dash ? c != '-' : hexValue(c) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Mirrors {@code \b[0-9a-f]{8}\b(?!-)} for a hex run that is exactly eight characters long.
+     */
+    private static boolean isStandalonePrefix(String text, int start, int end) {
+        if (start > 0 && isWordChar(text.charAt(start - 1))) {
+            return false;
+        }
+        if (end < text.length()) {
+            char next = text.charAt(end);
+            return !isWordChar(next) && next != '-';
+        }
+        return true;
+    }
+
+    private static boolean isWordChar(char c) {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+
+    /**
+     * Parses up to three hex ranges into one long, most significant range first.
+     */
+    private static long parseHex(String text, int from1, int to1, int from2, int to2, int from3, int to3) {
+        long value = 0L;
+        for (int i = from1; i < to1; i++) {
+            value = (value << 4) | hexValue(text.charAt(i));
+        }
+        for (int i = from2; i < to2; i++) {
+            value = (value << 4) | hexValue(text.charAt(i));
+        }
+        for (int i = from3; i < to3; i++) {
+            value = (value << 4) | hexValue(text.charAt(i));
+        }
+        return value;
+    }
+
+    private static String withCase(String lowerHex, String text, int tokenStart, int tokenEnd) {
+        for (int i = tokenStart; i < tokenEnd; i++) {
+            char c = text.charAt(i);
+            if (c >= 'a' && c <= 'f') {
+                return lowerHex;
+            }
+        }
+        return lowerHex.toUpperCase(Locale.ROOT);
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static int tableCapacity(int entries) {
+        int capacity = 16;
+        while (capacity < entries * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int mix(long msb, long lsb) {
+        long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private static int mix(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
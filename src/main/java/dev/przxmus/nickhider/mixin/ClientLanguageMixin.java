@@ -0,0 +1,31 @@
+package dev.przxmus.nickhider.mixin;
+
+import java.util.Map;
+import net.minecraft.client.resources.language.ClientLanguage;
+import net.minecraft.network.chat.FormattedText;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.ModifyVariable;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import dev.przxmus.nickhider.NickHider;
+
+@Mixin(ClientLanguage.class)
+public class ClientLanguageMixin {
+    @Inject(method = "<init>", at = @At("RETURN"), require = 0)
+    private void nickhider$indexLanguageText(Map<String, String> storage, boolean defaultRightToLeft, CallbackInfo ci) {
+        var runtime = NickHider.runtimeOrNull();
+        if (runtime != null) {
+            runtime.onLanguageLoaded(storage);
+        }
+    }
+
+    @ModifyVariable(method = "getVisualOrder", at = @At("HEAD"), argsOnly = true, require = 0)
+    private FormattedText nickhider$sanitizeAcrossSegments(FormattedText text) {
+        var runtime = NickHider.runtimeOrNull();
+        if (runtime == null) {
+            return text;
+        }
+        return runtime.sanitizeFormatted(text);
+    }
+}
@@ -0,0 +1,33 @@
+package dev.przxmus.nickhider.mixin;
+
+import net.minecraft.client.multiplayer.ClientPacketListener;
+import net.minecraft.network.protocol.game.ClientboundPlayerInfoRemovePacket;
+import net.minecraft.network.protocol.game.ClientboundPlayerInfoUpdatePacket;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import dev.przxmus.nickhider.NickHider;
+
+@Mixin(ClientPacketListener.class)
+public class ClientPacketListenerMixin {
+    @Inject(method = "handlePlayerInfoUpdate", at = @At("RETURN"), require = 0)
+    private void nickhider$onPlayerInfoUpdate(ClientboundPlayerInfoUpdatePacket packet, CallbackInfo ci) {
+        if (!packet.actions().contains(ClientboundPlayerInfoUpdatePacket.Action.ADD_PLAYER)) {
+            return;
+        }
+        nickhider$refreshRoster();
+    }
+
+    @Inject(method = "handlePlayerInfoRemove", at = @At("RETURN"), require = 0)
+    private void nickhider$onPlayerInfoRemove(ClientboundPlayerInfoRemovePacket packet, CallbackInfo ci) {
+        nickhider$refreshRoster();
+    }
+
+    private static void nickhider$refreshRoster() {
+        var runtime = NickHider.runtimeOrNull();
+        if (runtime != null) {
+            runtime.onRosterChanged();
+        }
+    }
+}
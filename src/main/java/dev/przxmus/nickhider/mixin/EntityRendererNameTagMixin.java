@@ -8,6 +8,7 @@ import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.ModifyVariable;
 import dev.przxmus.nickhider.NickHider;
+import dev.przxmus.nickhider.core.DisplayNameSlot;
 
 @Mixin(EntityRenderer.class)
 public abstract class EntityRendererNameTagMixin {
@@ -28,11 +29,6 @@ public abstract class EntityRendererNameTagMixin {
             return displayName;
         }
 
-        String sanitized = runtime.sanitizeText(displayName.getString());
-        if (sanitized.equals(displayName.getString())) {
-            return displayName;
-        }
-
-        return Component.literal(sanitized).withStyle(displayName.getStyle());
+        return runtime.sanitizeDisplayName(displayName, entity instanceof DisplayNameSlot slot ? slot : null);
     }
 }
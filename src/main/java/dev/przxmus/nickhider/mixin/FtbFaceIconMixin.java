@@ -2,15 +2,21 @@ package dev.przxmus.nickhider.mixin;
 
 import com.mojang.authlib.GameProfile;
 import dev.przxmus.nickhider.NickHider;
+import dev.przxmus.nickhider.core.AppliedSkinSlot;
 import dev.przxmus.nickhider.core.ProfileCompat;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
 import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.util.Objects;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Pseudo;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
@@ -18,17 +24,39 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 @Pseudo
 @Mixin(targets = "dev.ftb.mods.ftblibrary.icon.FaceIcon", remap = false)
-public abstract class FtbFaceIconMixin {
+public abstract class FtbFaceIconMixin implements AppliedSkinSlot {
     private static final AtomicBoolean APPLY_LOGGED = new AtomicBoolean(false);
     private static final AtomicBoolean FAILURE_LOGGED = new AtomicBoolean(false);
 
-    private static volatile Method iconWithUvMethod;
-    private static volatile Constructor<?> imageIconConstructor;
-    private static volatile Field profileField;
-    private static volatile Field skinField;
-    private static volatile Field headField;
-    private static volatile Field hatField;
-    private static volatile Field imageIconTextureField;
+    private static final int NOT_APPLIED = Integer.MIN_VALUE;
+    private static final int FACE_ICON_CACHE_MAX_ENTRIES = 64;
+    private static final MethodType WITH_UV_TYPE = MethodType.methodType(
+            Object.class, Object.class, float.class, float.class, float.class, float.class, float.class, float.class
+    );
+
+    // Skin, head and hat icons per replacement texture, shared by every FaceIcon showing that texture.
+    private static final Map<Object, Object[]> FACE_ICONS = new ConcurrentHashMap<>();
+
+    private static volatile MethodHandle iconWithUvMethod;
+    private static volatile MethodHandle imageIconConstructor;
+    private static volatile Class<?> imageIconTextureClass;
+    private static volatile VarHandle profileField;
+    private static volatile VarHandle skinField;
+    private static volatile VarHandle headField;
+    private static volatile VarHandle hatField;
+
+    @Unique
+    private volatile int nickhider$appliedSkinVersion = NOT_APPLIED;
+
+    @Override
+    public int nickhider$appliedSkinVersion() {
+        return nickhider$appliedSkinVersion;
+    }
+
+    @Override
+    public void nickhider$setAppliedSkinVersion(int version) {
+        nickhider$appliedSkinVersion = version;
+    }
 
     @Inject(
             method = "getFace(Lcom/mojang/authlib/GameProfile;)Ldev/ftb/mods/ftblibrary/icon/FaceIcon;",
@@ -36,7 +64,7 @@ public abstract class FtbFaceIconMixin {
             require = 0
     )
     private static void nickhider$overrideSingleGetFace(GameProfile profile, CallbackInfoReturnable<Object> cir) {
-        nickhider$applyMaskedTexture(cir.getReturnValue(), profile);
+        nickhider$applyMaskedTexture(cir.getReturnValue(), profile, false);
     }
 
     @Inject(
@@ -45,7 +73,7 @@ public abstract class FtbFaceIconMixin {
             require = 0
     )
     private static void nickhider$overrideDualGetFace(GameProfile profile, boolean isClient, CallbackInfoReturnable<Object> cir) {
-        nickhider$applyMaskedTexture(cir.getReturnValue(), profile);
+        nickhider$applyMaskedTexture(cir.getReturnValue(), profile, false);
     }
 
     @Inject(
@@ -54,12 +82,8 @@ public abstract class FtbFaceIconMixin {
             require = 0
     )
     private void nickhider$overrideAsyncLoadedFaceSkin(CallbackInfo ci) {
-        try {
-            GameProfile profile = nickhider$extractProfile(this);
-            nickhider$applyMaskedTexture(this, profile);
-        } catch (Throwable ex) {
-            nickhider$logFailure(ex);
-        }
+        // The loaded skin replaced the icons, so the applied version no longer describes them.
+        nickhider$applyMaskedTexture(this, null, true);
     }
 
     @Inject(
@@ -68,51 +92,46 @@ public abstract class FtbFaceIconMixin {
             require = 0
     )
     private void nickhider$overrideBeforeDraw(CallbackInfo ci) {
-        try {
-            GameProfile profile = nickhider$extractProfile(this);
-            nickhider$applyMaskedTexture(this, profile);
-        } catch (Throwable ex) {
-            nickhider$logFailure(ex);
-        }
+        nickhider$applyMaskedTexture(this, null, false);
     }
 
-    private static void nickhider$applyMaskedTexture(Object faceIcon, GameProfile profile) {
-        if (faceIcon == null || profile == null) {
+    private static void nickhider$applyMaskedTexture(Object faceIcon, GameProfile profile, boolean force) {
+        if (!(faceIcon instanceof AppliedSkinSlot slot)) {
             return;
         }
 
+        int version = NOT_APPLIED;
         try {
             var runtime = NickHider.runtimeOrNull();
             if (runtime == null) {
                 return;
             }
 
-            UUID profileId = ProfileCompat.id(profile);
-            if (profileId == null) {
-                return;
-            }
-
-            String profileName = ProfileCompat.name(profile);
-            var replacement = runtime.replacementSkin(profileId, profileName);
-            if (replacement.isEmpty()) {
-                return;
-            }
-
-            Object textureLocation = replacement.get().textureLocation();
-            if (textureLocation == null) {
+            version = runtime.skinOverrideVersion();
+            if (!force && slot.nickhider$appliedSkinVersion() == version) {
                 return;
             }
 
-            Object currentTexture = nickhider$currentSkinTexture(faceIcon);
-            if (Objects.equals(currentTexture, textureLocation)) {
-                return;
+            GameProfile target = profile != null ? profile : nickhider$extractProfile(faceIcon);
+            UUID profileId = ProfileCompat.id(target);
+            Object textureLocation = null;
+            if (profileId != null) {
+                var replacement = runtime.replacementSkin(profileId, ProfileCompat.name(target));
+                if (replacement.isPresent()) {
+                    textureLocation = replacement.get().textureLocation();
+                }
             }
-
-            nickhider$applyFaceTexture(faceIcon, textureLocation);
-            if (APPLY_LOGGED.compareAndSet(false, true)) {
-                NickHider.LOGGER.info("[NH-FTB-HOOK] Applied FaceIcon texture override");
+            if (textureLocation != null) {
+                nickhider$applyFaceTexture(faceIcon, nickhider$faceIcons(textureLocation));
+                if (APPLY_LOGGED.compareAndSet(false, true)) {
+                    NickHider.LOGGER.info("[NH-FTB-HOOK] Applied FaceIcon texture override");
+                }
             }
+            // Recorded only once the icon shows this version's outcome: the override, or none to apply.
+            slot.nickhider$setAppliedSkinVersion(version);
         } catch (Throwable ex) {
+            // A failing icon is retried on the next version change, not on every frame.
+            slot.nickhider$setAppliedSkinVersion(version);
             nickhider$logFailure(ex);
         }
     }
@@ -130,121 +149,124 @@ public abstract class FtbFaceIconMixin {
         return profile instanceof GameProfile gameProfile ? gameProfile : null;
     }
 
-    private static void nickhider$applyFaceTexture(Object faceIcon, Object textureLocation) throws ReflectiveOperationException {
-        Constructor<?> iconCtor = nickhider$resolveImageIconConstructor(textureLocation.getClass());
-        Method withUv = nickhider$resolveWithUvMethod();
-
-        Object imageIcon = iconCtor.newInstance(textureLocation);
-        Object head = withUv.invoke(imageIcon, 8F, 8F, 8F, 8F, 64F, 64F);
-        Object hat = withUv.invoke(imageIcon, 40F, 8F, 8F, 8F, 64F, 64F);
-
-        nickhider$resolveSkinField(faceIcon).set(faceIcon, imageIcon);
-        nickhider$resolveHeadField(faceIcon).set(faceIcon, head);
-        nickhider$resolveHatField(faceIcon).set(faceIcon, hat);
+    private static void nickhider$applyFaceTexture(Object faceIcon, Object[] icons) throws ReflectiveOperationException {
+        nickhider$resolveSkinField(faceIcon).set(faceIcon, icons[0]);
+        nickhider$resolveHeadField(faceIcon).set(faceIcon, icons[1]);
+        nickhider$resolveHatField(faceIcon).set(faceIcon, icons[2]);
     }
 
-    private static Object nickhider$currentSkinTexture(Object faceIcon) throws ReflectiveOperationException {
-        Object skinIcon = nickhider$resolveSkinField(faceIcon).get(faceIcon);
-        if (skinIcon == null) {
-            return null;
+    private static Object[] nickhider$faceIcons(Object textureLocation) throws Throwable {
+        Object[] cached = FACE_ICONS.get(textureLocation);
+        if (cached != null) {
+            return cached;
         }
 
-        Class<?> skinClass = skinIcon.getClass();
-        if (!"dev.ftb.mods.ftblibrary.icon.ImageIcon".equals(skinClass.getName())) {
-            return null;
-        }
+        MethodHandle iconCtor = nickhider$resolveImageIconConstructor(textureLocation.getClass());
+        MethodHandle withUv = nickhider$resolveWithUvMethod();
 
-        Field textureField = nickhider$resolveImageIconTextureField(skinClass);
-        return textureField.get(skinIcon);
+        Object imageIcon = (Object) iconCtor.invokeExact(textureLocation);
+        Object head = (Object) withUv.invokeExact(imageIcon, 8F, 8F, 8F, 8F, 64F, 64F);
+        Object hat = (Object) withUv.invokeExact(imageIcon, 40F, 8F, 8F, 8F, 64F, 64F);
+        Object[] icons = {imageIcon, head, hat};
+
+        if (FACE_ICONS.size() >= FACE_ICON_CACHE_MAX_ENTRIES) {
+            // Evicts a single entry, so the icons of every other visible texture stay shared.
+            Iterator<Object> victim = FACE_ICONS.keySet().iterator();
+            if (victim.hasNext()) {
+                victim.next();
+                victim.remove();
+            }
+        }
+        Object[] raced = FACE_ICONS.putIfAbsent(textureLocation, icons);
+        return raced != null ? raced : icons;
     }
 
-    private static Method nickhider$resolveWithUvMethod() throws ReflectiveOperationException {
-        Method cached = iconWithUvMethod;
+    private static MethodHandle nickhider$resolveWithUvMethod() throws ReflectiveOperationException {
+        MethodHandle cached = iconWithUvMethod;
         if (cached != null) {
             return cached;
         }
 
         Class<?> iconClass = Class.forName("dev.ftb.mods.ftblibrary.icon.Icon");
-        Method resolved = iconClass.getMethod("withUV", float.class, float.class, float.class, float.class, float.class, float.class);
+        MethodHandle resolved = MethodHandles.publicLookup()
+                .unreflect(iconClass.getMethod("withUV", float.class, float.class, float.class, float.class, float.class, float.class))
+                .asType(WITH_UV_TYPE);
         iconWithUvMethod = resolved;
         return resolved;
     }
 
-    private static Constructor<?> nickhider$resolveImageIconConstructor(Class<?> textureClass) throws ReflectiveOperationException {
-        Constructor<?> cached = imageIconConstructor;
-        if (cached != null && cached.getParameterCount() == 1 && cached.getParameterTypes()[0].isAssignableFrom(textureClass)) {
+    private static MethodHandle nickhider$resolveImageIconConstructor(Class<?> textureClass) throws ReflectiveOperationException {
+        MethodHandle cached = imageIconConstructor;
+        Class<?> cachedTextureClass = imageIconTextureClass;
+        if (cached != null && cachedTextureClass != null && cachedTextureClass.isAssignableFrom(textureClass)) {
             return cached;
         }
 
         Class<?> imageIconClass = Class.forName("dev.ftb.mods.ftblibrary.icon.ImageIcon");
+        Constructor<?> match = null;
         for (Constructor<?> constructor : imageIconClass.getConstructors()) {
-            if (constructor.getParameterCount() != 1) {
-                continue;
-            }
-            Class<?> parameter = constructor.getParameterTypes()[0];
-            if (parameter.isAssignableFrom(textureClass)) {
-                imageIconConstructor = constructor;
-                return constructor;
+            if (constructor.getParameterCount() == 1 && constructor.getParameterTypes()[0].isAssignableFrom(textureClass)) {
+                match = constructor;
+                break;
             }
         }
+        if (match == null) {
+            match = imageIconClass.getConstructor(textureClass);
+        }
 
-        Constructor<?> resolved = imageIconClass.getConstructor(textureClass);
+        MethodHandle resolved = MethodHandles.publicLookup()
+                .unreflectConstructor(match)
+                .asType(MethodType.methodType(Object.class, Object.class));
+        imageIconTextureClass = match.getParameterTypes()[0];
         imageIconConstructor = resolved;
         return resolved;
     }
 
-    private static Field nickhider$resolveProfileField(Object faceIcon) throws ReflectiveOperationException {
-        Field cached = profileField;
+    private static VarHandle nickhider$resolveProfileField(Object faceIcon) throws ReflectiveOperationException {
+        VarHandle cached = profileField;
         if (cached != null) {
             return cached;
         }
 
-        Field resolved = faceIcon.getClass().getField("profile");
+        VarHandle resolved = nickhider$fieldHandle(faceIcon, "profile");
         profileField = resolved;
         return resolved;
     }
 
-    private static Field nickhider$resolveSkinField(Object faceIcon) throws ReflectiveOperationException {
-        Field cached = skinField;
+    private static VarHandle nickhider$resolveSkinField(Object faceIcon) throws ReflectiveOperationException {
+        VarHandle cached = skinField;
         if (cached != null) {
             return cached;
         }
 
-        Field resolved = faceIcon.getClass().getField("skin");
+        VarHandle resolved = nickhider$fieldHandle(faceIcon, "skin");
         skinField = resolved;
         return resolved;
     }
 
-    private static Field nickhider$resolveHeadField(Object faceIcon) throws ReflectiveOperationException {
-        Field cached = headField;
+    private static VarHandle nickhider$resolveHeadField(Object faceIcon) throws ReflectiveOperationException {
+        VarHandle cached = headField;
         if (cached != null) {
             return cached;
         }
 
-        Field resolved = faceIcon.getClass().getField("head");
+        VarHandle resolved = nickhider$fieldHandle(faceIcon, "head");
         headField = resolved;
         return resolved;
     }
 
-    private static Field nickhider$resolveHatField(Object faceIcon) throws ReflectiveOperationException {
-        Field cached = hatField;
+    private static VarHandle nickhider$resolveHatField(Object faceIcon) throws ReflectiveOperationException {
+        VarHandle cached = hatField;
         if (cached != null) {
             return cached;
         }
 
-        Field resolved = faceIcon.getClass().getField("hat");
+        VarHandle resolved = nickhider$fieldHandle(faceIcon, "hat");
         hatField = resolved;
         return resolved;
     }
 
-    private static Field nickhider$resolveImageIconTextureField(Class<?> imageIconClass) throws ReflectiveOperationException {
-        Field cached = imageIconTextureField;
-        if (cached != null) {
-            return cached;
-        }
-
-        Field resolved = imageIconClass.getField("texture");
-        imageIconTextureField = resolved;
-        return resolved;
+    private static VarHandle nickhider$fieldHandle(Object faceIcon, String name) throws ReflectiveOperationException {
+        return MethodHandles.publicLookup().unreflectVarHandle(faceIcon.getClass().getField(name));
     }
 }
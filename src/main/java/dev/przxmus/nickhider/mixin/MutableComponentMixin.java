@@ -0,0 +1,61 @@
+package dev.przxmus.nickhider.mixin;
+
+import net.minecraft.locale.Language;
+import net.minecraft.network.chat.MutableComponent;
+import net.minecraft.util.FormattedCharSequence;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+import dev.przxmus.nickhider.NickHider;
+import dev.przxmus.nickhider.core.SanitizedTextSlot;
+
+@Mixin(MutableComponent.class)
+public abstract class MutableComponentMixin implements SanitizedTextSlot {
+    @Shadow
+    private Language decomposedWith;
+
+    @Unique
+    private volatile SanitizedTextSlot.Cached nickhider$sanitized;
+
+    @Unique
+    private long nickhider$visualOrderStamp;
+
+    @Override
+    public SanitizedTextSlot.Cached nickhider$sanitized() {
+        return nickhider$sanitized;
+    }
+
+    @Override
+    public void nickhider$setSanitized(SanitizedTextSlot.Cached cached) {
+        nickhider$sanitized = cached;
+    }
+
+    @Override
+    public long nickhider$visualOrderStamp() {
+        return nickhider$visualOrderStamp;
+    }
+
+    @Override
+    public void nickhider$setVisualOrderStamp(long stamp) {
+        nickhider$visualOrderStamp = stamp;
+    }
+
+    @Inject(method = {"append", "setStyle"}, at = @At("RETURN"), require = 0)
+    private void nickhider$invalidateSanitized(CallbackInfoReturnable<MutableComponent> cir) {
+        nickhider$sanitized = null;
+    }
+
+    /**
+     * The visual order is only rebuilt when the language changes, so a roster or config change must drop it too.
+     */
+    @Inject(method = "getVisualOrder", at = @At("HEAD"), require = 0)
+    private void nickhider$invalidateStaleVisualOrder(CallbackInfoReturnable<FormattedCharSequence> cir) {
+        var runtime = NickHider.runtimeOrNull();
+        if (runtime != null && SanitizedTextSlot.visualOrderStale(this, runtime.sanitizeStamp())) {
+            decomposedWith = null;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package dev.przxmus.nickhider.mixin;
+
+import net.minecraft.world.entity.player.Player;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import dev.przxmus.nickhider.core.DisplayNameSlot;
+
+@Mixin(Player.class)
+public abstract class PlayerDisplayNameSlotMixin implements DisplayNameSlot {
+    @Unique
+    private volatile DisplayNameSlot.Cached nickhider$maskedDisplayName;
+
+    @Override
+    public DisplayNameSlot.Cached nickhider$maskedDisplayName() {
+        return nickhider$maskedDisplayName;
+    }
+
+    @Override
+    public void nickhider$setMaskedDisplayName(DisplayNameSlot.Cached cached) {
+        nickhider$maskedDisplayName = cached;
+    }
+}
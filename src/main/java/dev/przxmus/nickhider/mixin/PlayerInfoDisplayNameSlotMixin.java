@@ -0,0 +1,22 @@
+package dev.przxmus.nickhider.mixin;
+
+import net.minecraft.client.multiplayer.PlayerInfo;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import dev.przxmus.nickhider.core.DisplayNameSlot;
+
+@Mixin(PlayerInfo.class)
+public abstract class PlayerInfoDisplayNameSlotMixin implements DisplayNameSlot {
+    @Unique
+    private volatile DisplayNameSlot.Cached nickhider$maskedDisplayName;
+
+    @Override
+    public DisplayNameSlot.Cached nickhider$maskedDisplayName() {
+        return nickhider$maskedDisplayName;
+    }
+
+    @Override
+    public void nickhider$setMaskedDisplayName(DisplayNameSlot.Cached cached) {
+        nickhider$maskedDisplayName = cached;
+    }
+}
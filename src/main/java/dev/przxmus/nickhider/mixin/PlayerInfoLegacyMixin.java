@@ -9,8 +9,7 @@ import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 import dev.przxmus.nickhider.NickHider;
-import dev.przxmus.nickhider.core.ProfileCompat;
-import dev.przxmus.nickhider.core.ResolvedSkin;
+import dev.przxmus.nickhider.core.SkinMaskSlot;
 
 @Mixin(PlayerInfo.class)
 public abstract class PlayerInfoLegacyMixin {
@@ -24,21 +23,10 @@ public abstract class PlayerInfoLegacyMixin {
     @SuppressWarnings({"rawtypes", "unchecked"})
     private void nickhider$overrideSkinLocation(CallbackInfoReturnable cir) {
         try {
-            var runtime = NickHider.runtimeOrNull();
-            if (runtime == null) {
-                return;
+            SkinMaskSlot.Cached mask = nickhider$resolveSkinMask();
+            if (mask != null && mask.skin() != null) {
+                cir.setReturnValue(mask.skin().textureLocation());
             }
-
-            GameProfile profile = this.getProfile();
-            java.util.UUID profileId = ProfileCompat.id(profile);
-            String profileName = ProfileCompat.name(profile);
-            if (profileId == null) {
-                return;
-            }
-
-            runtime.replacementSkin(profileId, profileName)
-                    .map(ResolvedSkin::textureLocation)
-                    .ifPresent(cir::setReturnValue);
         } catch (Throwable throwable) {
             nickhider$logLegacyHookFailure("getSkinLocation", throwable);
         }
@@ -47,21 +35,10 @@ public abstract class PlayerInfoLegacyMixin {
     @Inject(method = "getModelName", at = @At("RETURN"), cancellable = true, require = 0)
     private void nickhider$overrideSkinModel(CallbackInfoReturnable<String> cir) {
         try {
-            var runtime = NickHider.runtimeOrNull();
-            if (runtime == null) {
-                return;
-            }
-
-            GameProfile profile = this.getProfile();
-            java.util.UUID profileId = ProfileCompat.id(profile);
-            String profileName = ProfileCompat.name(profile);
-            if (profileId == null) {
-                return;
+            SkinMaskSlot.Cached mask = nickhider$resolveSkinMask();
+            if (mask != null && mask.skin() != null) {
+                cir.setReturnValue(mask.skin().modelName());
             }
-
-            runtime.replacementSkin(profileId, profileName)
-                    .map(ResolvedSkin::modelName)
-                    .ifPresent(cir::setReturnValue);
         } catch (Throwable throwable) {
             nickhider$logLegacyHookFailure("getModelName", throwable);
         }
@@ -71,21 +48,10 @@ public abstract class PlayerInfoLegacyMixin {
     @SuppressWarnings({"rawtypes", "unchecked"})
     private void nickhider$overrideCapeLocation(CallbackInfoReturnable cir) {
         try {
-            var runtime = NickHider.runtimeOrNull();
-            if (runtime == null) {
-                return;
-            }
-
-            GameProfile profile = this.getProfile();
-            java.util.UUID profileId = ProfileCompat.id(profile);
-            String profileName = ProfileCompat.name(profile);
-            if (profileId == null || !runtime.shouldOverrideCape(profileId, profileName)) {
-                return;
+            SkinMaskSlot.Cached mask = nickhider$resolveSkinMask();
+            if (mask != null && mask.overrideCape()) {
+                cir.setReturnValue(mask.cape() != null ? mask.cape().capeTextureLocation() : null);
             }
-
-            runtime.replacementCape(profileId, profileName)
-                    .map(ResolvedSkin::capeTextureLocation)
-                    .ifPresentOrElse(cir::setReturnValue, () -> cir.setReturnValue(null));
         } catch (Throwable throwable) {
             nickhider$logLegacyHookFailure("getCapeLocation", throwable);
         }
@@ -95,25 +61,22 @@ public abstract class PlayerInfoLegacyMixin {
     @SuppressWarnings({"rawtypes", "unchecked"})
     private void nickhider$overrideElytraLocation(CallbackInfoReturnable cir) {
         try {
-            var runtime = NickHider.runtimeOrNull();
-            if (runtime == null) {
-                return;
-            }
-
-            GameProfile profile = this.getProfile();
-            java.util.UUID profileId = ProfileCompat.id(profile);
-            String profileName = ProfileCompat.name(profile);
-            if (profileId == null || !runtime.shouldOverrideCape(profileId, profileName)) {
-                return;
+            SkinMaskSlot.Cached mask = nickhider$resolveSkinMask();
+            if (mask != null && mask.overrideCape()) {
+                cir.setReturnValue(mask.cape() != null ? mask.cape().elytraTextureLocation() : null);
             }
-
-            runtime.replacementCape(profileId, profileName)
-                    .map(ResolvedSkin::elytraTextureLocation)
-                    .ifPresentOrElse(cir::setReturnValue, () -> cir.setReturnValue(null));
         } catch (Throwable throwable) {
             nickhider$logLegacyHookFailure("getElytraLocation", throwable);
         }
     }
+
+    private SkinMaskSlot.Cached nickhider$resolveSkinMask() {
+        var runtime = NickHider.runtimeOrNull();
+        if (runtime == null) {
+            return null;
+        }
+        return runtime.skinMask(this.getProfile(), (Object) this instanceof SkinMaskSlot slot ? slot : null);
+    }
     /*?}*/
 
     private static void nickhider$logLegacyHookFailure(String hook, Throwable throwable) {
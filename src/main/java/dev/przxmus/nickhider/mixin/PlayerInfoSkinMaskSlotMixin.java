@@ -0,0 +1,22 @@
+package dev.przxmus.nickhider.mixin;
+
+import net.minecraft.client.multiplayer.PlayerInfo;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import dev.przxmus.nickhider.core.SkinMaskSlot;
+
+@Mixin(PlayerInfo.class)
+public abstract class PlayerInfoSkinMaskSlotMixin implements SkinMaskSlot {
+    @Unique
+    private volatile SkinMaskSlot.Cached nickhider$skinMask;
+
+    @Override
+    public SkinMaskSlot.Cached nickhider$skinMask() {
+        return nickhider$skinMask;
+    }
+
+    @Override
+    public void nickhider$setSkinMask(SkinMaskSlot.Cached cached) {
+        nickhider$skinMask = cached;
+    }
+}
@@ -1,18 +1,18 @@
 package dev.przxmus.nickhider.mixin;
 
 import com.mojang.authlib.GameProfile;
-import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
 import net.minecraft.client.multiplayer.PlayerInfo;
 import net.minecraft.resources.ResourceLocation;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 import dev.przxmus.nickhider.NickHider;
-import dev.przxmus.nickhider.core.ProfileCompat;
 import dev.przxmus.nickhider.core.ResolvedSkin;
+import dev.przxmus.nickhider.core.SkinMaskSlot;
 
 /*? if >=1.21.1 {*/
 /*import net.minecraft.client.resources.PlayerSkin;
@@ -27,7 +27,15 @@ public abstract class PlayerInfoSkinRecordMixin {
     public abstract GameProfile getProfile();
 
     /*? if >=1.21.1 {*/
-    /*@Inject(method = "getSkin", at = @At("RETURN"), cancellable = true, require = 0)
+    /*// Last override built for this entry; getSkin() is only called on the render thread.
+    @Unique
+    private PlayerSkin nickhider$skinSource;
+    @Unique
+    private SkinMaskSlot.Cached nickhider$skinSourceMask;
+    @Unique
+    private PlayerSkin nickhider$maskedSkin;
+
+    @Inject(method = "getSkin", at = @At("RETURN"), cancellable = true, require = 0)
     private void nickhider$overrideSkinRecord(CallbackInfoReturnable<PlayerSkin> cir) {
         try {
             var runtime = NickHider.runtimeOrNull();
@@ -35,25 +43,17 @@ public abstract class PlayerInfoSkinRecordMixin {
                 return;
             }
 
-            GameProfile profile = this.getProfile();
-            java.util.UUID profileId = ProfileCompat.id(profile);
-            String profileName = ProfileCompat.name(profile);
-            if (profileId == null) {
-                return;
-            }
-
             PlayerSkin current = cir.getReturnValue();
             if (current == null) {
                 return;
             }
 
-            Optional<ResolvedSkin> replacementSkin = runtime.replacementSkin(profileId, profileName);
-            boolean overrideCape = runtime.shouldOverrideCape(profileId, profileName);
-            Optional<ResolvedSkin> replacementCape = overrideCape
-                    ? runtime.replacementCape(profileId, profileName)
-                    : Optional.empty();
-
-            if (replacementSkin.isEmpty() && !overrideCape) {
+            SkinMaskSlot.Cached mask = runtime.skinMask(this.getProfile(), (Object) this instanceof SkinMaskSlot slot ? slot : null);
+            if (mask.skin() == null && !mask.overrideCape()) {
+                return;
+            }
+            if (current == nickhider$skinSource && mask == nickhider$skinSourceMask) {
+                cir.setReturnValue(nickhider$maskedSkin);
                 return;
             }
 
@@ -64,8 +64,8 @@ public abstract class PlayerInfoSkinRecordMixin {
             PlayerSkin.Model model = current.model();
             boolean secure = current.secure();
 
-            if (replacementSkin.isPresent()) {
-                ResolvedSkin skin = replacementSkin.get();
+            if (mask.skin() != null) {
+                ResolvedSkin skin = mask.skin();
                 ResourceLocation mappedTexture = asLocation(skin.textureLocation());
                 if (mappedTexture != null) {
                     texture = mappedTexture;
@@ -73,9 +73,9 @@ public abstract class PlayerInfoSkinRecordMixin {
                 model = resolveModel(skin.modelName(), model);
             }
 
-            if (overrideCape) {
-                if (replacementCape.isPresent()) {
-                    ResolvedSkin capeSkin = replacementCape.get();
+            if (mask.overrideCape()) {
+                if (mask.cape() != null) {
+                    ResolvedSkin capeSkin = mask.cape();
                     cape = asLocation(capeSkin.capeTextureLocation());
                     elytra = asLocation(capeSkin.elytraTextureLocation());
                 } else {
@@ -84,7 +84,11 @@ public abstract class PlayerInfoSkinRecordMixin {
                 }
             }
 
-            cir.setReturnValue(new PlayerSkin(texture, textureUrl, cape, elytra, model, secure));
+            PlayerSkin masked = new PlayerSkin(texture, textureUrl, cape, elytra, model, secure);
+            nickhider$skinSource = current;
+            nickhider$skinSourceMask = mask;
+            nickhider$maskedSkin = masked;
+            cir.setReturnValue(masked);
         } catch (Throwable throwable) {
             nickhider$logSkinRecordHookFailure("getSkin", throwable);
         }
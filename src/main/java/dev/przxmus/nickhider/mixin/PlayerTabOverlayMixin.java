@@ -4,11 +4,13 @@ import com.mojang.authlib.GameProfile;
 import net.minecraft.client.gui.components.PlayerTabOverlay;
 import net.minecraft.client.multiplayer.PlayerInfo;
 import net.minecraft.network.chat.Component;
+import net.minecraft.world.scores.PlayerTeam;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 import dev.przxmus.nickhider.NickHider;
+import dev.przxmus.nickhider.core.DisplayNameSlot;
 import dev.przxmus.nickhider.core.ProfileCompat;
 
 @Mixin(PlayerTabOverlay.class)
@@ -20,16 +22,25 @@ public class PlayerTabOverlayMixin {
             return;
         }
 
+        Component original = cir.getReturnValue();
+        Component displayName = original;
         GameProfile profile = info.getProfile();
         java.util.UUID profileId = ProfileCompat.id(profile);
         String profileName = ProfileCompat.name(profile);
-        if (profileId == null || profileName == null) {
-            return;
+        if (profileId != null && profileName != null) {
+            String replacement = runtime.replacementName(profileId, profileName);
+            if (!replacement.equals(profileName)) {
+                // The profile decides masking: a custom tab name need not contain the profile name, so it is replaced
+                // by the team-formatted alias, keeping vanilla's root style such as spectator italics.
+                var masked = PlayerTeam.formatNameForTeam(info.getTeam(), Component.literal(replacement));
+                displayName = original == null ? masked : masked.withStyle(original.getStyle());
+            }
         }
 
-        String replacement = runtime.replacementName(profileId, profileName);
-        if (!replacement.equals(profileName)) {
-            cir.setReturnValue(Component.literal(replacement));
+        // Text sanitization only cleans up the decoration, such as team prefixes and suffixes naming other players.
+        Component sanitized = runtime.sanitizeDisplayName(displayName, info instanceof DisplayNameSlot slot ? slot : null);
+        if (sanitized != original) {
+            cir.setReturnValue(sanitized);
         }
     }
 }
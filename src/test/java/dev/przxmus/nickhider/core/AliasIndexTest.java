@@ -0,0 +1,47 @@
+package dev.przxmus.nickhider.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class AliasIndexTest {
+    @Test
+    void matchesHashMapAcrossResizes() {
+        AliasIndex index = new AliasIndex();
+        Map<UUID, String> expected = new HashMap<>();
+        Random random = new Random(42L);
+        for (int i = 0; i < 5_000; i++) {
+            UUID uuid = new UUID(random.nextLong(), random.nextLong());
+            String shortId = Long.toString(i, 36);
+            index.put(uuid, shortId);
+            expected.put(uuid, shortId);
+        }
+
+        assertEquals(expected.size(), index.size());
+        assertEquals(expected, index.snapshot());
+        for (Map.Entry<UUID, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), index.get(entry.getKey()));
+            assertEquals(entry.getKey(), index.ownerOf(entry.getValue()));
+        }
+        assertNull(index.get(new UUID(1L, 2L)));
+        assertNull(index.ownerOf("missing"));
+    }
+
+    @Test
+    void replacingIdUpdatesReverseLookup() {
+        AliasIndex index = new AliasIndex();
+        UUID uuid = UUID.fromString("11111111-1111-1111-1111-111111111111");
+        index.put(uuid, "abc");
+        index.put(uuid, "def");
+
+        assertEquals("def", index.get(uuid));
+        assertEquals(uuid, index.ownerOf("def"));
+        assertNull(index.ownerOf("abc"));
+        assertEquals(1, index.size());
+    }
+}
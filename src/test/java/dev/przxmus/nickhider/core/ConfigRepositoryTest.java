@@ -0,0 +1,51 @@
+package dev.przxmus.nickhider.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import dev.przxmus.nickhider.config.ConfigRepository;
+import dev.przxmus.nickhider.config.ConfigSnapshot;
+import dev.przxmus.nickhider.config.PrivacyConfig;
+
+class ConfigRepositoryTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void snapshotIsSharedUntilNextPublish() {
+        ConfigRepository repository = new ConfigRepository(tempDir.resolve("nickhider.json"));
+        repository.reload();
+
+        ConfigSnapshot first = repository.snapshot();
+        assertSame(first, repository.snapshot());
+
+        PrivacyConfig next = repository.get();
+        next.localName = "Masked";
+        repository.save(next);
+
+        ConfigSnapshot second = repository.snapshot();
+        assertTrue(second.version() > first.version());
+        assertEquals("Masked", second.config().localName);
+        assertNotSame(next, second.config());
+
+        next.localName = "EditedAfterSave";
+        second.config().localName = "EditedSnapshot";
+        assertEquals("Masked", repository.snapshot().config().localName);
+    }
+
+    @Test
+    void editableCopyDoesNotLeakIntoSnapshot() {
+        ConfigRepository repository = new ConfigRepository(tempDir.resolve("nickhider.json"));
+        repository.reload();
+
+        PrivacyConfig editable = repository.get();
+        editable.localName = "Changed";
+
+        assertEquals("Player", repository.snapshot().config().localName);
+    }
+}
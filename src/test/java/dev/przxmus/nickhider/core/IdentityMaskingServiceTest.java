@@ -2,10 +2,16 @@ package dev.przxmus.nickhider.core;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
+import dev.przxmus.nickhider.config.ConfigSnapshot;
 import dev.przxmus.nickhider.config.PrivacyConfig;
 import java.nio.file.Path;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
@@ -13,6 +19,13 @@ class IdentityMaskingServiceTest {
     @TempDir
     Path tempDir;
 
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void shutDownWorker() {
+        worker.shutdownNow();
+    }
+
     @Test
     void syntheticUuidIsDeterministicAndValid() {
         IdentityMaskingService service = newService();
@@ -41,7 +54,7 @@ class IdentityMaskingServiceTest {
         assertEquals(service.syntheticUuid("MaskedLocal"), local.uuid());
 
         UUID otherUuid = UUID.fromString("bbbbbbbb-bbbb-bbbb-bbbb-bbbbbbbbbbbb");
-        String shortId = new PlayerAliasService(tempDir.resolve("ids-shadow.json")).getOrCreateShortId(otherUuid);
+        String shortId = aliasService(tempDir.resolve("ids-shadow.bin")).getOrCreateShortId(otherUuid);
         MaskedProfile other = service.maskForName(config, false, otherUuid, "RealOther");
         assertEquals("Player_" + shortId, other.name());
         assertEquals(service.syntheticUuid(other.name()), other.uuid());
@@ -120,7 +133,33 @@ class IdentityMaskingServiceTest {
         assertEquals(service.syntheticUuid("notch"), localHead.uuid());
     }
 
+    @Test
+    void versionedPolicyReusesMaskedProfileAndGameProfile() {
+        IdentityMaskingService service = newService();
+        PrivacyConfig config = new PrivacyConfig();
+        config.enabled = true;
+        config.hideOtherNames = true;
+        config.othersNameTemplate = "Player_[ID]";
+
+        UUID otherUuid = UUID.fromString("bbbbbbbb-bbbb-bbbb-bbbb-bbbbbbbbbbbb");
+        MaskingPolicy policy = MaskingPolicy.compile(new ConfigSnapshot(1L, config));
+        MaskedProfile first = service.maskForName(policy, false, otherUuid, "RealOther");
+        MaskedProfile second = service.maskForName(policy, false, otherUuid, "RealOther");
+
+        assertSame(first, second);
+        assertSame(first.toGameProfile(), second.toGameProfile());
+
+        config.othersNameTemplate = "Anon_[ID]";
+        MaskedProfile afterChange = service.maskForName(MaskingPolicy.compile(new ConfigSnapshot(2L, config)), false, otherUuid, "RealOther");
+        assertNotSame(first, afterChange);
+        assertNotEquals(first.name(), afterChange.name());
+    }
+
     private IdentityMaskingService newService() {
-        return new IdentityMaskingService(new PlayerAliasService(tempDir.resolve("ids.json")));
+        return new IdentityMaskingService(aliasService(tempDir.resolve("ids.bin")));
+    }
+
+    private PlayerAliasService aliasService(Path storePath) {
+        return new PlayerAliasService(storePath, worker, 3_600_000L);
     }
 }
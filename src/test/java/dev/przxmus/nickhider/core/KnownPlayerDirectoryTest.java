@@ -0,0 +1,149 @@
+package dev.przxmus.nickhider.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class KnownPlayerDirectoryTest {
+    private static final UuidTokenRewriter NO_UUIDS = UuidTokenRewriter.compile(Map.of());
+
+    @TempDir
+    Path tempDir;
+
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void shutDownWorker() {
+        worker.shutdownNow();
+    }
+
+    @Test
+    void recordedNamesGoThroughOverlayAndFoldingKeepsGeneration() throws Exception {
+        Map<UUID, String> players = new LinkedHashMap<>();
+        for (int i = 0; i < 200; i++) {
+            players.put(new UUID(0L, i), "Player" + i);
+        }
+        KnownPlayerDirectory seen = directory();
+        seen.record(players);
+        seen.flush();
+
+        KnownPlayerDirectory directory = directory();
+        long loadedGeneration = directory.dictionary().generation();
+        assertEquals(0, directory.overlaySize());
+
+        directory.record(Map.of(new UUID(1L, 1L), "Latecomer"));
+        NameDictionary withOverlay = directory.dictionary();
+        assertEquals(loadedGeneration + 1, withOverlay.generation());
+        assertEquals(1, directory.overlaySize());
+        assertEquals("masked_Player7 masked_Latecomer", apply(withOverlay, "Player7 Latecomer"));
+
+        directory.rebuildNow();
+        NameDictionary folded = directory.dictionary();
+        assertEquals(withOverlay.generation(), folded.generation());
+        assertEquals(0, directory.overlaySize());
+        assertEquals("masked_Player7 masked_Latecomer", apply(folded, "Player7 Latecomer"));
+    }
+
+    @Test
+    void renamedPlayerReleasesOldNameUnlessAnotherPlayerHoldsIt() throws Exception {
+        UUID first = new UUID(0L, 1L);
+        UUID second = new UUID(0L, 2L);
+        KnownPlayerDirectory directory = directory();
+        Map<UUID, String> players = new LinkedHashMap<>();
+        players.put(first, "Shared");
+        players.put(second, "Shared");
+        directory.record(players);
+        directory.rebuildNow();
+
+        directory.record(Map.of(second, "Renamed"));
+        assertEquals("masked_Shared masked_Renamed", apply(directory.dictionary(), "Shared Renamed"));
+
+        directory.record(Map.of(first, "Other"));
+        assertEquals("Shared masked_Other", apply(directory.dictionary(), "Shared Other"));
+    }
+
+    @Test
+    void playerRecordedUnderTwoNamesOwnsSharedNameAfterReload() throws Exception {
+        UUID first = new UUID(0L, 1L);
+        UUID second = new UUID(0L, 2L);
+        NameDictionary.Masker owner = (uuid, name) -> uuid.equals(first) ? "first" : "second";
+
+        KnownPlayerDirectory directory = directory();
+        directory.record(Map.of(first, "Shared"));
+        directory.flush();
+        directory.record(Map.of(second, "Shared"));
+        directory.flush();
+        directory.record(Map.of(first, "Other"));
+        directory.flush();
+        directory.record(Map.of(first, "Shared"));
+        directory.flush();
+        assertEquals("first", apply(directory.dictionary(), "Shared", owner));
+
+        KnownPlayerDirectory reloaded = directory();
+        assertEquals(2, reloaded.size());
+        assertEquals("first", apply(reloaded.dictionary(), "Shared", owner));
+        assertEquals("Other", apply(reloaded.dictionary(), "Other", owner));
+    }
+
+    @Test
+    void renamesWithinOneFlushReplayInRecencyOrder() throws Exception {
+        UUID first = new UUID(0L, 1L);
+        UUID second = new UUID(0L, 2L);
+        NameDictionary.Masker owner = (uuid, name) -> uuid.equals(first) ? "first" : "second";
+
+        KnownPlayerDirectory directory = directory();
+        directory.record(Map.of(first, "Shared"));
+        directory.record(Map.of(second, "Shared"));
+        directory.record(Map.of(first, "Other"));
+        directory.record(Map.of(first, "Shared"));
+        directory.flush();
+
+        assertEquals("first", apply(directory().dictionary(), "Shared", owner));
+    }
+
+    @Test
+    void recordingPastCapacityForgetsOldestPlayersOnDiskToo() throws Exception {
+        KnownPlayerDirectory directory = directory(2);
+        directory.record(Map.of(new UUID(0L, 1L), "Oldest"));
+        directory.record(Map.of(new UUID(0L, 2L), "Middle"));
+        directory.record(Map.of(new UUID(0L, 3L), "Newest"));
+        assertEquals(2, directory.size());
+        assertEquals("Oldest masked_Middle masked_Newest", apply(directory.dictionary(), "Oldest Middle Newest"));
+        directory.flush();
+
+        KnownPlayerDirectory reloaded = directory(2);
+        assertEquals(2, reloaded.size());
+        assertEquals("Oldest masked_Middle masked_Newest", apply(reloaded.dictionary(), "Oldest Middle Newest"));
+
+        KnownPlayerDirectory shrunk = directory(1);
+        assertEquals(1, shrunk.size());
+        assertEquals("Oldest Middle masked_Newest", apply(shrunk.dictionary(), "Oldest Middle Newest"));
+    }
+
+    private KnownPlayerDirectory directory() throws Exception {
+        return directory(KnownPlayerDirectory.MAX_KNOWN_PLAYERS);
+    }
+
+    private KnownPlayerDirectory directory(int capacity) throws Exception {
+        KnownPlayerDirectory directory = new KnownPlayerDirectory(tempDir.resolve("names.bin"), worker, 60_000L, 60_000L, capacity);
+        // Waits for the initial base built from the names on disk.
+        worker.submit(() -> { }).get();
+        return directory;
+    }
+
+    private static String apply(NameDictionary dictionary, String text) {
+        return apply(dictionary, text, (uuid, name) -> "masked_" + name);
+    }
+
+    private static String apply(NameDictionary dictionary, String text, NameDictionary.Masker masker) {
+        return NO_UUIDS.apply(text, dictionary.layers(masker));
+    }
+}
@@ -0,0 +1,49 @@
+package dev.przxmus.nickhider.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import dev.przxmus.nickhider.config.PrivacyConfig;
+
+class MaskingPolicyTest {
+    @Test
+    void othersTemplateSubstitutesEveryIdToken() {
+        PrivacyConfig config = new PrivacyConfig();
+        config.othersNameTemplate = "[ID]_P_[ID]";
+
+        MaskingPolicy.Target others = MaskingPolicy.compile(config).target(false);
+
+        assertTrue(others.nameUsesShortId());
+        assertEquals("ab12_P_ab12", others.maskedName("ab12"));
+    }
+
+    @Test
+    void localTargetUsesFixedNameWithoutShortId() {
+        PrivacyConfig config = new PrivacyConfig();
+        config.localName = "Hidden";
+
+        MaskingPolicy.Target local = MaskingPolicy.compile(config).target(true);
+
+        assertFalse(local.nameUsesShortId());
+        assertEquals("Hidden", local.maskedName(null));
+    }
+
+    @Test
+    void capeSourceFallsBackToSkinSource() {
+        PrivacyConfig config = new PrivacyConfig();
+        config.localSkinUser = "notch";
+        config.localCapeUser = "";
+        config.othersSkinUser = "";
+        config.othersCapeUser = "";
+
+        MaskingPolicy policy = MaskingPolicy.compile(config);
+
+        assertEquals("notch", policy.target(true).capeSourceUser());
+        assertEquals("notch", policy.target(true).headSourceName());
+        assertNull(policy.target(false).capeSourceUser());
+        assertNull(policy.target(false).headSourceName());
+    }
+}
@@ -1,11 +1,23 @@
 package dev.przxmus.nickhider.core;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
@@ -13,9 +25,16 @@ class PlayerAliasServiceTest {
     @TempDir
     Path tempDir;
 
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void shutDownWorker() {
+        worker.shutdownNow();
+    }
+
     @Test
     void generatesDeterministicShortId() {
-        PlayerAliasService service = new PlayerAliasService(tempDir.resolve("ids.json"));
+        PlayerAliasService service = aliasService(tempDir.resolve("ids.bin"));
         UUID uuid = UUID.fromString("aaaaaaaa-aaaa-aaaa-aaaa-aaaaaaaaaaaa");
 
         String first = service.getOrCreateShortId(uuid);
@@ -28,11 +47,196 @@ class PlayerAliasServiceTest {
 
     @Test
     void createsDifferentIdsForDifferentUuids() {
-        PlayerAliasService service = new PlayerAliasService(tempDir.resolve("ids.json"));
+        PlayerAliasService service = aliasService(tempDir.resolve("ids.bin"));
 
         String one = service.getOrCreateShortId(UUID.fromString("11111111-1111-1111-1111-111111111111"));
         String two = service.getOrCreateShortId(UUID.fromString("22222222-2222-2222-2222-222222222222"));
 
         assertNotEquals(one, two);
     }
+
+    @Test
+    void writesBehindUntilFlushedAndReloadsFlushedAliases() {
+        Path cachePath = tempDir.resolve("ids.bin");
+        PlayerAliasService service = aliasService(cachePath);
+        UUID first = UUID.fromString("11111111-1111-1111-1111-111111111111");
+        UUID second = UUID.fromString("22222222-2222-2222-2222-222222222222");
+        String firstId = service.getOrCreateShortId(first);
+        String secondId = service.getOrCreateShortId(second);
+
+        assertFalse(Files.exists(cachePath));
+
+        service.flush();
+        assertTrue(Files.exists(cachePath));
+
+        PlayerAliasService reloaded = aliasService(cachePath);
+        assertEquals(firstId, reloaded.getOrCreateShortId(first));
+        assertEquals(secondId, reloaded.getOrCreateShortId(second));
+    }
+
+    @Test
+    void migratesLegacyJsonCacheIntoBinaryStore() throws IOException {
+        Path storePath = tempDir.resolve("ids.bin");
+        Files.writeString(
+                tempDir.resolve("ids.json"),
+                "{\"aliases\":{\"11111111-1111-1111-1111-111111111111\":\"abc12\"}}",
+                StandardCharsets.UTF_8
+        );
+
+        PlayerAliasService migrated = aliasService(storePath);
+        assertEquals("abc12", migrated.getOrCreateShortId(UUID.fromString("11111111-1111-1111-1111-111111111111")));
+        assertTrue(Files.exists(storePath));
+        assertFalse(Files.exists(tempDir.resolve("ids.json")));
+
+        PlayerAliasService reloaded = aliasService(storePath);
+        assertEquals("abc12", reloaded.getOrCreateShortId(UUID.fromString("11111111-1111-1111-1111-111111111111")));
+    }
+
+    @Test
+    void compactsTornTailBeforeAppending() throws IOException {
+        Path storePath = tempDir.resolve("ids.bin");
+        UUID first = UUID.fromString("11111111-1111-1111-1111-111111111111");
+        UUID second = UUID.fromString("22222222-2222-2222-2222-222222222222");
+        PlayerAliasService service = aliasService(storePath);
+        String firstId = service.getOrCreateShortId(first);
+        service.flush();
+
+        Files.write(storePath, new byte[] {1, 2, 3}, StandardOpenOption.APPEND);
+        long tornSize = Files.size(storePath);
+
+        PlayerAliasService recovered = aliasService(storePath);
+        assertTrue(Files.size(storePath) < tornSize);
+        String secondId = recovered.getOrCreateShortId(second);
+        recovered.flush();
+
+        PlayerAliasService reloaded = aliasService(storePath);
+        assertEquals(firstId, reloaded.getOrCreateShortId(first));
+        assertEquals(secondId, reloaded.getOrCreateShortId(second));
+        assertEquals(8L + 2 * 24L, Files.size(storePath));
+    }
+
+    @Test
+    void batchPrecomputeMatchesLazilyCreatedIds() {
+        List<UUID> roster = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            roster.add(new UUID(0x1234L, i));
+        }
+
+        PlayerAliasService batched = aliasService(tempDir.resolve("batched.bin"));
+        batched.precomputeNow(roster);
+        PlayerAliasService lazy = aliasService(tempDir.resolve("lazy.bin"));
+
+        for (UUID uuid : roster) {
+            assertEquals(lazy.getOrCreateShortId(uuid), batched.getOrCreateShortId(uuid));
+        }
+    }
+
+    @Test
+    void serverNamespacesPersistToTheirOwnShards() throws Exception {
+        Path storePath = tempDir.resolve("ids.bin");
+        UUID uuid = UUID.fromString("11111111-1111-1111-1111-111111111111");
+        PlayerAliasService service = aliasService(storePath);
+
+        activate(service, "Play.Example.net:25565");
+        assertEquals("play.example.net_25565", service.activeNamespace());
+        String serverId = service.getOrCreateShortId(uuid);
+        service.releaseNamespace();
+        service.flush();
+
+        assertNull(service.activeNamespace());
+        assertTrue(Files.exists(tempDir.resolve("ids-servers").resolve("play.example.net_25565.bin")));
+        assertFalse(Files.exists(storePath));
+
+        PlayerAliasService reloaded = aliasService(storePath);
+        activate(reloaded, "play.example.net:25565");
+        assertEquals(serverId, reloaded.getOrCreateShortId(uuid));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedShardsBeyondCap() throws Exception {
+        PlayerAliasService service = aliasService(tempDir.resolve("ids.bin"));
+        long generation = service.namespaceGeneration();
+        for (int i = 0; i < 10; i++) {
+            activate(service, "server" + i + ".example.net");
+            service.getOrCreateShortId(new UUID(i, i));
+        }
+
+        assertEquals(4, service.residentShardCount());
+        assertEquals("server9.example.net", service.activeNamespace());
+        assertTrue(service.namespaceGeneration() > generation);
+        assertTrue(Files.exists(tempDir.resolve("ids-servers").resolve("server0.example.net.bin")));
+    }
+
+    @Test
+    void serverNamespacesDeriveTheirOwnAliasesAndGlobalKeepsTheOriginalOne() throws Exception {
+        UUID uuid = UUID.fromString("11111111-1111-1111-1111-111111111111");
+        PlayerAliasService service = aliasService(tempDir.resolve("ids.bin"));
+        assertEquals("yq88cc", service.getOrCreateShortId(uuid));
+
+        activate(service, "one.example.net");
+        String first = service.getOrCreateShortId(uuid);
+        activate(service, "two.example.net");
+        String second = service.getOrCreateShortId(uuid);
+
+        assertNotEquals("yq88cc", first);
+        assertNotEquals("yq88cc", second);
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    void serverShardLoadsOnWorkerWhileGlobalShardServesLookups() throws Exception {
+        PlayerAliasService service = aliasService(tempDir.resolve("ids.bin"));
+        long generation = service.namespaceGeneration();
+        CountDownLatch busy = new CountDownLatch(1);
+        worker.execute(() -> {
+            try {
+                busy.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        service.activateNamespace("play.example.net");
+        assertNull(service.activeNamespace());
+        assertEquals(0, service.residentShardCount());
+
+        busy.countDown();
+        worker.submit(() -> { }).get();
+        assertEquals("play.example.net", service.activeNamespace());
+        assertEquals(generation + 1, service.namespaceGeneration());
+    }
+
+    @Test
+    void supersededShardLoadIsNotPublished() throws Exception {
+        PlayerAliasService service = aliasService(tempDir.resolve("ids.bin"));
+        CountDownLatch busy = new CountDownLatch(1);
+        worker.execute(() -> {
+            try {
+                busy.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        service.activateNamespace("play.example.net");
+        service.releaseNamespace();
+        busy.countDown();
+        worker.submit(() -> { }).get();
+
+        assertNull(service.activeNamespace());
+        assertEquals(1, service.residentShardCount());
+    }
+
+    private void activate(PlayerAliasService service, String serverAddress) throws Exception {
+        service.activateNamespace(serverAddress);
+        // Waits for the shard load queued on the worker to be published.
+        worker.submit(() -> { }).get();
+    }
+
+    /**
+     * Uses the test's worker with a long flush delay, so nothing is written behind the test's back.
+     */
+    private PlayerAliasService aliasService(Path storePath) {
+        return new PlayerAliasService(storePath, worker, 3_600_000L);
+    }
 }
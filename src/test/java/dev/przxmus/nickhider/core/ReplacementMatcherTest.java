@@ -0,0 +1,64 @@
+package dev.przxmus.nickhider.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class ReplacementMatcherTest {
+    @Test
+    void returnsSameInstanceWhenNothingMatches() {
+        ReplacementMatcher matcher = ReplacementMatcher.compile(Map.of("Alice", "Player"));
+        String text = "Nothing to see here";
+
+        assertSame(text, matcher.apply(text));
+    }
+
+    @Test
+    void replacesAllOccurrencesInOnePass() {
+        Map<String, String> replacements = new LinkedHashMap<>();
+        replacements.put("Alice", "Player");
+        replacements.put("Bob", "Player_1a2b");
+        ReplacementMatcher matcher = ReplacementMatcher.compile(replacements);
+
+        assertEquals("Player joined, Player_1a2b left, Player waved", matcher.apply("Alice joined, Bob left, Alice waved"));
+    }
+
+    @Test
+    void prefersLongestPatternAtSameStart() {
+        Map<String, String> replacements = new LinkedHashMap<>();
+        replacements.put("Steve", "A");
+        replacements.put("Steve_Pro", "B");
+        ReplacementMatcher matcher = ReplacementMatcher.compile(replacements);
+
+        assertEquals("B vs A", matcher.apply("Steve_Pro vs Steve"));
+    }
+
+    @Test
+    void prefersLeftmostMatchAndDoesNotRewriteReplacements() {
+        Map<String, String> replacements = new LinkedHashMap<>();
+        replacements.put("abcd", "X");
+        replacements.put("bc", "Y");
+        replacements.put("Play", "Player_zz");
+        replacements.put("Bob", "Player");
+        ReplacementMatcher matcher = ReplacementMatcher.compile(replacements);
+
+        assertEquals("X aYe", matcher.apply("abcd abce"));
+        assertEquals("Player", matcher.apply("Bob"));
+    }
+
+    @Test
+    void matchesThroughFormattingCodesAndKeepsThem() {
+        ReplacementMatcher matcher = ReplacementMatcher.compile(Map.of("Player", "Alias"));
+        ReplacementMatcher.Layer[] dictionary = {
+                new ReplacementMatcher.Layer(ReplacementMatcher.compileDictionary(List.of("Steve")), id -> "Hidden", null)
+        };
+
+        assertEquals("\u00a7eAlias\u00a7b joined", matcher.apply("\u00a7ePlay\u00a7ber joined"));
+        assertEquals("\u00a7aHidden\u00a7r left", ReplacementMatcher.apply("\u00a7aSteve\u00a7r left", dictionary));
+        assertEquals("\u00a7aSteve\u00a7ls", ReplacementMatcher.apply("\u00a7aSteve\u00a7ls", dictionary));
+    }
+}
@@ -0,0 +1,72 @@
+package dev.przxmus.nickhider.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class RosterPatternIndexTest {
+    private static final RosterPatternIndex.MaskingInputs INPUTS = new RosterPatternIndex.MaskingInputs(null, 0L, null);
+
+    private final List<Runnable> queuedRebuilds = new ArrayList<>();
+    private final List<String> created = new ArrayList<>();
+    private final RosterPatternIndex index = new RosterPatternIndex(queuedRebuilds::add);
+
+    @Test
+    void joinsAndLeavesOnlyMaskChangedPlayers() {
+        UUID alice = UUID.fromString("aaaaaaaa-aaaa-aaaa-aaaa-aaaaaaaaaaaa");
+        UUID bob = UUID.fromString("bbbbbbbb-bbbb-bbbb-bbbb-bbbbbbbbbbbb");
+        Map<UUID, String> roster = new LinkedHashMap<>();
+        roster.put(alice, "Alice");
+        sync(1L, roster);
+
+        roster.put(bob, "Bob");
+        RosterPatternIndex.Patterns patterns = sync(2L, roster);
+        assertEquals(List.of("Alice", "Bob"), created);
+        assertEquals("masked_Alice, masked_Bob", apply(patterns, "Alice, Bob"));
+
+        roster.remove(alice);
+        patterns = sync(3L, roster);
+        assertEquals(List.of("Alice", "Bob"), created);
+        assertEquals("Alice, masked_Bob " + alice, apply(patterns, "Alice, Bob " + alice));
+        assertSame(patterns, sync(3L, roster));
+    }
+
+    @Test
+    void backgroundRebuildFoldsOverlayIntoBaseAndKeepsLaterChanges() {
+        Map<UUID, String> roster = new LinkedHashMap<>();
+        long epoch = 1L;
+        sync(epoch, roster);
+        for (int i = 0; queuedRebuilds.isEmpty(); i++) {
+            assertTrue(i <= RosterPatternIndex.OVERLAY_REBUILD_THRESHOLD);
+            roster.put(new UUID(0L, i), "Player" + i);
+            sync(++epoch, roster);
+        }
+
+        UUID late = new UUID(1L, 1L);
+        roster.put(late, "Latecomer");
+        sync(++epoch, roster);
+        queuedRebuilds.remove(0).run();
+
+        RosterPatternIndex.Patterns patterns = index.current();
+        assertEquals(2, index.overlaySize());
+        assertEquals("masked_Player7 masked_Latecomer", apply(patterns, "Player7 Latecomer"));
+    }
+
+    private RosterPatternIndex.Patterns sync(long epoch, Map<UUID, String> roster) {
+        return index.sync(new RosterSnapshot(epoch, Map.copyOf(roster), null), INPUTS, (uuid, name) -> {
+            created.add(name);
+            return new RosterPatternIndex.Entry(name, "masked_" + name, new UUID(uuid.getLeastSignificantBits(), uuid.getMostSignificantBits() + 1));
+        });
+    }
+
+    private static String apply(RosterPatternIndex.Patterns patterns, String text) {
+        return patterns.uuids().apply(text, patterns.nameLayers());
+    }
+}
@@ -0,0 +1,36 @@
+package dev.przxmus.nickhider.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class SanitizedTextCacheTest {
+    @Test
+    void staysBoundedAndKeepsEntriesThatAreStillRead() {
+        SanitizedTextCache cache = new SanitizedTextCache(8, 64);
+        cache.get("hot", 1L);
+        cache.put("hot", "masked", 1L);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals("masked", cache.get("hot", 1L));
+            cache.put("cold" + i, "text" + i, 1L);
+            assertTrue(cache.size() <= 8);
+        }
+        assertEquals("masked", cache.get("hot", 1L));
+    }
+
+    @Test
+    void newEpochDropsEntriesAndIgnoresStalePuts() {
+        SanitizedTextCache cache = new SanitizedTextCache(8, 64);
+        cache.get("text", 1L);
+        cache.put("text", "masked", 1L);
+
+        assertNull(cache.get("text", 2L));
+        cache.put("text", "stale", 1L);
+        assertNull(cache.get("text", 2L));
+        assertEquals(0, cache.size());
+        assertEquals(3L, cache.misses());
+    }
+}
@@ -44,6 +44,7 @@ class SkinResolutionServiceTest {
         );
 
         ResolvedSkin first = service.resolveOrFallback("SourceUser", TARGET_UUID);
+        long generation = service.generation();
         assertEquals("default-skin", first.textureLocation());
         assertEquals(1, executor.pendingTasks());
 
@@ -51,6 +52,7 @@ class SkinResolutionServiceTest {
         ResolvedSkin second = service.resolveOrFallback("SourceUser", TARGET_UUID);
         assertEquals("skin-loaded", second.textureLocation());
         assertEquals(1, lookupCalls.get());
+        assertTrue(service.generation() > generation);
     }
 
     @Test
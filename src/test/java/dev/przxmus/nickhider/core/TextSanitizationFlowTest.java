@@ -1,24 +1,42 @@
 package dev.przxmus.nickhider.core;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import dev.przxmus.nickhider.config.PrivacyConfig;
 
 class TextSanitizationFlowTest {
+    private static final UUID LOCAL = UUID.fromString("aaaaaaaa-aaaa-aaaa-aaaa-aaaaaaaaaaaa");
+    private static final RosterSnapshot LOCAL_ROSTER = new RosterSnapshot(1L, Map.of(LOCAL, "LocalPlayer"), LOCAL);
+
     @TempDir
     Path tempDir;
 
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void shutDownWorker() {
+        worker.shutdownNow();
+    }
+
     @Test
     void replacementMapContainsLocalAndOthersAccordingToToggles() {
-        PlayerAliasService service = new PlayerAliasService(tempDir.resolve("ids.json"));
+        PlayerAliasService service = aliasService(tempDir.resolve("ids.bin"));
         PrivacyConfig config = new PrivacyConfig();
         config.enabled = true;
         config.hideLocalName = true;
@@ -39,7 +57,7 @@ class TextSanitizationFlowTest {
 
     @Test
     void replacementMapIsEmptyWhenGlobalSwitchDisabled() {
-        PlayerAliasService service = new PlayerAliasService(tempDir.resolve("ids.json"));
+        PlayerAliasService service = aliasService(tempDir.resolve("ids.bin"));
         PrivacyConfig config = new PrivacyConfig();
         config.enabled = false;
         config.hideLocalName = true;
@@ -55,4 +73,212 @@ class TextSanitizationFlowTest {
         Map<String, String> replacements = service.buildReplacementMap(local, names, config);
         assertTrue(replacements.isEmpty());
     }
+
+    @Test
+    void sanitizeMasksRosterSnapshotAndKeepsUnmatchedInstance() {
+        TextSanitizer sanitizer = sanitizer();
+        MaskingPolicy policy = hideLocalNamePolicy();
+
+        assertEquals("Player joined the game", sanitizer.sanitize("LocalPlayer joined the game", policy, LOCAL_ROSTER));
+
+        String untouched = "Nothing to mask here";
+        assertSame(untouched, sanitizer.sanitize(untouched, policy, LOCAL_ROSTER));
+    }
+
+    @Test
+    void sanitizeServesRepeatedTextFromCacheUntilEpochChanges() {
+        TextSanitizer sanitizer = sanitizer();
+        MaskingPolicy policy = MaskingPolicy.compile(new PrivacyConfig());
+
+        sanitizer.sanitize("LocalPlayer: hi", policy, LOCAL_ROSTER);
+        sanitizer.sanitize("LocalPlayer: hi", policy, LOCAL_ROSTER);
+        assertEquals(1L, sanitizer.cacheStats().hits());
+        assertEquals(1L, sanitizer.cacheStats().misses());
+
+        RosterSnapshot nextRoster = new RosterSnapshot(2L, Map.of(LOCAL, "Renamed"), LOCAL);
+        assertEquals("LocalPlayer: hi", sanitizer.sanitize("LocalPlayer: hi", policy, nextRoster));
+        assertEquals(2L, sanitizer.cacheStats().misses());
+    }
+
+    @Test
+    void prefilterRejectsTextWithoutCandidatesAndReportsRate() {
+        TextSanitizer sanitizer = sanitizer();
+        MaskingPolicy policy = hideLocalNamePolicy();
+
+        String label = "Diamond Sword x64";
+        assertSame(label, sanitizer.sanitize(label, policy, LOCAL_ROSTER));
+        assertEquals("Player: hi", sanitizer.sanitize("LocalPlayer: hi", policy, LOCAL_ROSTER));
+
+        TextCacheStats stats = sanitizer.cacheStats();
+        assertEquals(2L, stats.prefilterChecked());
+        assertEquals(1L, stats.prefilterRejected());
+        assertEquals(0.5D, stats.prefilterRejectRate());
+    }
+
+    @Test
+    void languageFileValuesPassThroughByIdentityOnly() {
+        TextSanitizer sanitizer = sanitizer();
+        MaskingPolicy policy = hideLocalNamePolicy();
+
+        String translated = new String("Ask LocalPlayer");
+        String template = new String("%s asked LocalPlayer");
+        assertEquals(1, sanitizer.indexLanguageText(Map.of("a", translated, "b", template)));
+
+        assertSame(translated, sanitizer.sanitize(translated, policy, LOCAL_ROSTER));
+        assertEquals("Ask Player", sanitizer.sanitize(new String(translated), policy, LOCAL_ROSTER));
+        assertEquals("%s asked Player", sanitizer.sanitize(template, policy, LOCAL_ROSTER));
+    }
+
+    @Test
+    void sanitizeSegmentsMatchesNamesSplitAcrossSegments() {
+        TextSanitizer sanitizer = sanitizer();
+        MaskingPolicy policy = hideLocalNamePolicy();
+
+        String[] split = {"[VIP] ", "Local", "Play", "er: hi"};
+        assertArrayEquals(new String[] {"[VIP] ", "Player", "", ": hi"}, sanitizer.sanitizeSegments(split, policy, LOCAL_ROSTER));
+
+        String[] untouched = {"Local", " and ", "Player"};
+        assertSame(untouched, sanitizer.sanitizeSegments(untouched, policy, LOCAL_ROSTER));
+    }
+
+    @Test
+    void sanitizeMasksWholeWordMentionsOfPersistedOfflinePlayersWithAliases() {
+        UUID offline = UUID.fromString("cccccccc-cccc-cccc-cccc-cccccccccccc");
+        UUID stranger = UUID.fromString("dddddddd-dddd-dddd-dddd-dddddddddddd");
+        KnownPlayerDirectory seen = new KnownPlayerDirectory(tempDir.resolve("names.bin"), worker, 0L, 60_000L, 16);
+        seen.record(Map.of(offline, "OfflineGuy", stranger, "Stranger"));
+        seen.flush();
+
+        KnownPlayerDirectory reloaded = new KnownPlayerDirectory(tempDir.resolve("names.bin"), worker, 0L, 60_000L, 16);
+        reloaded.rebuildNow();
+        assertEquals(2, reloaded.size());
+
+        PlayerAliasService aliasService = aliasService(tempDir.resolve("ids.bin"));
+        aliasService.getOrCreateShortId(offline);
+        TextSanitizer sanitizer = new TextSanitizer(aliasService, new IdentityMaskingService(aliasService), reloaded);
+        PrivacyConfig config = new PrivacyConfig();
+        config.enabled = true;
+        config.hideOtherNames = true;
+        assertEquals("OfflineGuy met Stranger", sanitizer.sanitize("OfflineGuy met Stranger", MaskingPolicy.compile(config), LOCAL_ROSTER));
+
+        config.maskKnownPlayers = true;
+        String sanitized = sanitizer.sanitize("OfflineGuy met Stranger and OfflineGuys", MaskingPolicy.compile(config), LOCAL_ROSTER);
+        assertFalse(sanitized.startsWith("OfflineGuy "));
+        assertTrue(sanitized.endsWith(" met Stranger and OfflineGuys"));
+    }
+
+    @Test
+    void cachedVisualOrderPicksUpRosterChangesAfterFirstRender() {
+        UUID remote = UUID.fromString("bbbbbbbb-bbbb-bbbb-bbbb-bbbbbbbbbbbb");
+        TextSanitizer sanitizer = sanitizer();
+        PrivacyConfig config = new PrivacyConfig();
+        config.enabled = true;
+        config.hideOtherNames = true;
+        MaskingPolicy policy = MaskingPolicy.compile(config);
+        RenderedComponent component = new RenderedComponent("RemotePlayer joined the game");
+
+        assertEquals("RemotePlayer joined the game", component.visualOrder(sanitizer, policy, LOCAL_ROSTER));
+
+        Map<UUID, String> names = new LinkedHashMap<>();
+        names.put(LOCAL, "LocalPlayer");
+        names.put(remote, "RemotePlayer");
+        RosterSnapshot joined = new RosterSnapshot(2L, names, LOCAL);
+        String masked = component.visualOrder(sanitizer, policy, joined);
+        assertFalse(masked.startsWith("RemotePlayer"));
+        assertTrue(masked.endsWith(" joined the game"));
+        assertSame(masked, component.visualOrder(sanitizer, policy, joined));
+    }
+
+    @Test
+    void backgroundRebuiltRosterBaseIsUsedWithoutRosterChange() {
+        List<Runnable> queuedRebuilds = new ArrayList<>();
+        PlayerAliasService aliasService = aliasService(tempDir.resolve("ids.bin"));
+        TextSanitizer sanitizer = new TextSanitizer(aliasService, new IdentityMaskingService(aliasService), null, new RosterPatternIndex(queuedRebuilds::add));
+        PrivacyConfig config = new PrivacyConfig();
+        config.enabled = true;
+        config.hideOtherNames = true;
+        MaskingPolicy policy = MaskingPolicy.compile(config);
+
+        Map<UUID, String> names = new LinkedHashMap<>();
+        names.put(LOCAL, "LocalPlayer");
+        RosterSnapshot roster = new RosterSnapshot(1L, Map.copyOf(names), LOCAL);
+        for (int i = 0; queuedRebuilds.isEmpty(); i++) {
+            assertTrue(i <= RosterPatternIndex.OVERLAY_REBUILD_THRESHOLD);
+            names.put(new UUID(0L, i), "Remote" + i);
+            roster = new RosterSnapshot(roster.epoch() + 1, Map.copyOf(names), LOCAL);
+            sanitizer.stamp(policy, roster);
+        }
+        long overlayStamp = sanitizer.stamp(policy, roster);
+        String masked = sanitizer.sanitize("Remote7 left", policy, roster);
+
+        queuedRebuilds.remove(0).run();
+
+        assertNotEquals(overlayStamp, sanitizer.stamp(policy, roster));
+        assertEquals(masked, sanitizer.sanitize("Remote7 left", policy, roster));
+        assertFalse(masked.startsWith("Remote7"));
+    }
+
+    private PlayerAliasService aliasService(Path storePath) {
+        return new PlayerAliasService(storePath, worker, 3_600_000L);
+    }
+
+    private TextSanitizer sanitizer() {
+        PlayerAliasService aliasService = aliasService(tempDir.resolve("ids.bin"));
+        return new TextSanitizer(aliasService, new IdentityMaskingService(aliasService));
+    }
+
+    /**
+     * Stands in for {@code MutableComponent}, which builds its visual order once per language and keeps it.
+     */
+    private static final class RenderedComponent implements SanitizedTextSlot {
+        private final String text;
+        private SanitizedTextSlot.Cached sanitized;
+        private long visualOrderStamp;
+        private String visualOrder;
+
+        private RenderedComponent(String text) {
+            this.text = text;
+        }
+
+        String visualOrder(TextSanitizer sanitizer, MaskingPolicy policy, RosterSnapshot roster) {
+            if (SanitizedTextSlot.visualOrderStale(this, sanitizer.stamp(policy, roster))) {
+                visualOrder = null;
+            }
+            if (visualOrder == null) {
+                visualOrder = sanitizer.sanitize(text, policy, roster);
+            }
+            return visualOrder;
+        }
+
+        @Override
+        public SanitizedTextSlot.Cached nickhider$sanitized() {
+            return sanitized;
+        }
+
+        @Override
+        public void nickhider$setSanitized(SanitizedTextSlot.Cached cached) {
+            sanitized = cached;
+        }
+
+        @Override
+        public long nickhider$visualOrderStamp() {
+            return visualOrderStamp;
+        }
+
+        @Override
+        public void nickhider$setVisualOrderStamp(long stamp) {
+            visualOrderStamp = stamp;
+        }
+    }
+
+    /**
+     * Masks only the local player, as "Player".
+     */
+    private static MaskingPolicy hideLocalNamePolicy() {
+        PrivacyConfig config = new PrivacyConfig();
+        config.enabled = true;
+        config.hideLocalName = true;
+        config.localName = "Player";
+        return MaskingPolicy.compile(config);
+    }
 }
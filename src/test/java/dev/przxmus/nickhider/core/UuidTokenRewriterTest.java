@@ -0,0 +1,158 @@
+package dev.przxmus.nickhider.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class UuidTokenRewriterTest {
+    private static final UUID ORIGINAL = UUID.fromString("aaaaaaaa-bbbb-cccc-dddd-eeeeeeeeeeee");
+    private static final UUID MASKED = UUID.fromString("12345678-9abc-def0-1234-56789abcdef0");
+    private static final ReplacementMatcher.Layer[] NO_NAMES = new ReplacementMatcher.Layer[0];
+
+    private final UuidTokenRewriter rewriter = UuidTokenRewriter.compile(Map.of(ORIGINAL, MASKED));
+
+    @Test
+    void rewritesDashedAndCompactFormsPreservingCase() {
+        assertEquals("id=" + MASKED + ".", rewriter.apply("id=" + ORIGINAL + ".", NO_NAMES));
+        assertEquals(MASKED.toString().toUpperCase(), rewriter.apply(ORIGINAL.toString().toUpperCase(), NO_NAMES));
+        assertEquals("x" + MASKED.toString().replace("-", ""), rewriter.apply("x" + ORIGINAL.toString().replace("-", ""), NO_NAMES));
+        assertEquals("0f" + MASKED, rewriter.apply("0f" + ORIGINAL, NO_NAMES));
+    }
+
+    @Test
+    void rewritesNbtIntArray() {
+        assertEquals(
+                "Owner:[I; 305419896, -1698898192, 305419896, -1698898192]",
+                rewriter.apply("Owner:[I; -1431655766, -1145320244, -572657938, -286331154]", NO_NAMES)
+        );
+    }
+
+    @Test
+    void rewritesOnlyStandalonePrefixes() {
+        assertEquals("uuid 12345678 ok", rewriter.apply("uuid aaaaaaaa ok", NO_NAMES));
+        assertEquals("UUID 12345678", rewriter.apply("UUID AAAAAAAA", NO_NAMES));
+
+        String embedded = "gaaaaaaaa aaaaaaaa_ aaaaaaaa- aaaaaaaaa";
+        assertSame(embedded, rewriter.apply(embedded, NO_NAMES));
+    }
+
+    @Test
+    void appliesNamesBetweenTokensAndKeepsUnchangedInstance() {
+        ReplacementMatcher.Layer[] names = {new ReplacementMatcher.Layer(ReplacementMatcher.compile(Map.of("Alice", "Player")), null, null)};
+        assertEquals("Player is " + MASKED + ", Player", rewriter.apply("Alice is " + ORIGINAL + ", Alice", names));
+
+        String untouched = "nothing " + UUID.fromString("00000000-0000-0000-0000-000000000001");
+        assertSame(untouched, rewriter.apply(untouched, names));
+    }
+
+    @Test
+    void matchesExpectedRewritesOnRandomizedText() {
+        Random random = new Random(42L);
+        Map<UUID, UUID> masks = new HashMap<>();
+        List<UUID> roster = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            UUID original = new UUID(random.nextLong(), random.nextLong());
+            roster.add(original);
+            masks.put(original, new UUID(random.nextLong(), random.nextLong()));
+        }
+        UuidTokenRewriter randomRewriter = UuidTokenRewriter.compile(masks);
+
+        for (int round = 0; round < 2_000; round++) {
+            StringBuilder text = new StringBuilder();
+            StringBuilder expected = new StringBuilder();
+            int pieces = 1 + random.nextInt(8);
+            for (int piece = 0; piece < pieces; piece++) {
+                if (piece > 0) {
+                    text.append(' ');
+                    expected.append(' ');
+                }
+                if (random.nextInt(3) == 0) {
+                    String noise = noise(random);
+                    text.append(noise);
+                    expected.append(noise);
+                    continue;
+                }
+
+                boolean known = random.nextBoolean();
+                UUID original = known ? roster.get(random.nextInt(roster.size())) : new UUID(random.nextLong(), random.nextLong());
+                UUID masked = known ? masks.get(original) : original;
+                int form = random.nextInt(4);
+                if (form == 3) {
+                    text.append(intArray(original));
+                    expected.append(intArray(masked));
+                    continue;
+                }
+
+                String token = randomCase(tokenForm(original, form), random);
+                text.append(token);
+                if (known) {
+                    String replacement = tokenForm(masked, form);
+                    expected.append(hasLowercaseHex(token) ? replacement : replacement.toUpperCase(Locale.ROOT));
+                } else {
+                    expected.append(token);
+                }
+            }
+            assertEquals(expected.toString(), randomRewriter.apply(text.toString(), NO_NAMES), text.toString());
+        }
+    }
+
+    /**
+     * Dashed, compact or prefix form of {@code uuid}.
+     */
+    private static String tokenForm(UUID uuid, int form) {
+        String dashed = uuid.toString();
+        return form == 0 ? dashed : form == 1 ? dashed.replace("-", "") : dashed.substring(0, 8);
+    }
+
+    /**
+     * Words without hex letters, digits or '[' so they can never form or touch a token.
+     */
+    private static String noise(Random random) {
+        StringBuilder word = new StringBuilder();
+        int length = 1 + random.nextInt(6);
+        for (int i = 0; i < length; i++) {
+            char c = (char) ('g' + random.nextInt(20));
+            word.append(random.nextBoolean() ? c : Character.toUpperCase(c));
+        }
+        return word.toString();
+    }
+
+    private static String randomCase(String token, Random random) {
+        return switch (random.nextInt(3)) {
+            case 0 -> token;
+            case 1 -> token.toUpperCase(Locale.ROOT);
+            default -> {
+                StringBuilder mixed = new StringBuilder(token.length());
+                for (int i = 0; i < token.length(); i++) {
+                    char c = token.charAt(i);
+                    mixed.append(random.nextBoolean() ? Character.toUpperCase(c) : c);
+                }
+                yield mixed.toString();
+            }
+        };
+    }
+
+    private static boolean hasLowercaseHex(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c >= 'a' && c <= 'f') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String intArray(UUID uuid) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        return "[I; " + (int) (msb >> 32) + ", " + (int) msb + ", " + (int) (lsb >> 32) + ", " + (int) lsb + "]";
+    }
+}